@@ -0,0 +1,112 @@
+package com.rewedigital.composer;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ServerSocketFactory;
+
+import com.rewedigital.composer.html.Markup;
+import com.squareup.okhttp.mockwebserver.Dispatcher;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.RecordedRequest;
+
+/**
+ * Stands in for the template and fragment services of all scenarios. Templates are served at
+ * <code>/template/{scenario}</code>, their includes point to <code>/fragment/{scenario}/{depth}/{index}</code>. Every
+ * response is delayed according to the latency of its scenario.
+ */
+class Backends extends Dispatcher {
+
+    /**
+     * Disables Nagle's algorithm for accepted connections. The mock web server writes headers and body separately,
+     * which otherwise delays every response by the delayed ack timeout of about 40ms.
+     */
+    private static class NoDelayServerSocketFactory extends ServerSocketFactory {
+
+        @Override
+        public ServerSocket createServerSocket() throws IOException {
+            return new ServerSocket() {
+                @Override
+                public Socket accept() throws IOException {
+                    final Socket socket = super.accept();
+                    socket.setTcpNoDelay(true);
+                    return socket;
+                }
+            };
+        }
+
+        @Override
+        public ServerSocket createServerSocket(final int port) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ServerSocket createServerSocket(final int port, final int backlog) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ServerSocket createServerSocket(final int port, final int backlog, final InetAddress address)
+            throws IOException {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private final Map<String, Scenario> scenarios = new HashMap<>();
+    private final Map<String, String> bodies = new HashMap<>();
+
+    Backends(final String baseUrl, final List<Scenario> scenarios) {
+        for (final Scenario scenario : scenarios) {
+            this.scenarios.put(scenario.name(), scenario);
+            bodies.put(templatePath(scenario), Markup.template(scenario.templateSize(), scenario.includes(), 0,
+                fragmentUrl(baseUrl, scenario, 1)));
+            for (int depth = 1; depth <= scenario.depth(); depth++) {
+                final int includes = depth < scenario.depth() ? 1 : 0;
+                bodies.put(fragmentPath(scenario, depth),
+                    Markup.fragment(scenario.fragmentSize(), includes, fragmentUrl(baseUrl, scenario, depth + 1)));
+            }
+        }
+    }
+
+    static ServerSocketFactory serverSocketFactory() {
+        return new NoDelayServerSocketFactory();
+    }
+
+    static String templatePath(final Scenario scenario) {
+        return "/template/" + scenario.name();
+    }
+
+    private static String fragmentPath(final Scenario scenario, final int depth) {
+        return "/fragment/" + scenario.name() + "/" + depth;
+    }
+
+    private static String fragmentUrl(final String baseUrl, final Scenario scenario, final int depth) {
+        return baseUrl + fragmentPath(scenario, depth).substring(1);
+    }
+
+    @Override
+    public MockResponse dispatch(final RecordedRequest request) {
+        // fragment paths end with the index of the include, which doesn't change the fragment
+        final String path = request.getPath().startsWith("/fragment/")
+            ? request.getPath().substring(0, request.getPath().lastIndexOf('/'))
+            : request.getPath();
+        final String body = bodies.get(path);
+        if (body == null) {
+            return new MockResponse().setResponseCode(404);
+        }
+
+        final Scenario scenario = scenarios.get(path.split("/")[2]);
+        return new MockResponse()
+            .setHeader("Content-Type", "text/html")
+            .setHeader("Cache-Control", scenario.cacheControl())
+            .setBody(body)
+            .setBodyDelay(scenario.latency().sampleMillis(ThreadLocalRandom.current()), TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,108 @@
+package com.rewedigital.composer;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.openmbean.CompositeData;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import com.sun.management.ThreadMXBean;
+
+/**
+ * Bytes allocated and garbage collection pauses of this JVM between {@link #reset()} and {@link #snapshot()}.
+ *
+ * <p>
+ * Allocations are summed up over all live threads, so allocations of threads that terminate in between are missed.
+ * Composer and the load generating clients run on long-lived pool threads, thus this is negligible.
+ */
+class JvmStatistics {
+
+    static class Snapshot {
+        private final long allocatedBytes;
+        private final long gcPauses;
+        private final long gcPauseMillis;
+        private final long maxGcPauseMillis;
+
+        private Snapshot(final long allocatedBytes, final long gcPauses, final long gcPauseMillis,
+            final long maxGcPauseMillis) {
+            this.allocatedBytes = allocatedBytes;
+            this.gcPauses = gcPauses;
+            this.gcPauseMillis = gcPauseMillis;
+            this.maxGcPauseMillis = maxGcPauseMillis;
+        }
+
+        long allocatedBytes() {
+            return allocatedBytes;
+        }
+
+        long gcPauses() {
+            return gcPauses;
+        }
+
+        long gcPauseMillis() {
+            return gcPauseMillis;
+        }
+
+        long maxGcPauseMillis() {
+            return maxGcPauseMillis;
+        }
+    }
+
+    private final ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private Map<Long, Long> allocatedAtReset = new HashMap<>();
+    private long gcPauses;
+    private long gcPauseMillis;
+    private long maxGcPauseMillis;
+
+    JvmStatistics() {
+        for (final GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            ((NotificationEmitter) gc).addNotificationListener((notification, handback) -> gcFinished(notification),
+                n -> GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(n.getType()), null);
+        }
+    }
+
+    synchronized void reset() {
+        allocatedAtReset = allocatedBytesPerThread();
+        gcPauses = 0;
+        gcPauseMillis = 0;
+        maxGcPauseMillis = 0;
+    }
+
+    synchronized Snapshot snapshot() {
+        long allocated = 0;
+        for (final Map.Entry<Long, Long> thread : allocatedBytesPerThread().entrySet()) {
+            allocated += thread.getValue() - allocatedAtReset.getOrDefault(thread.getKey(), 0L);
+        }
+        return new Snapshot(allocated, gcPauses, gcPauseMillis, maxGcPauseMillis);
+    }
+
+    private synchronized void gcFinished(final Notification notification) {
+        final GarbageCollectionNotificationInfo info =
+            GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+        // concurrent cycles don't stop the application
+        if (info.getGcAction().contains("concurrent")) {
+            return;
+        }
+        final long duration = info.getGcInfo().getDuration();
+        gcPauses++;
+        gcPauseMillis += duration;
+        maxGcPauseMillis = Math.max(maxGcPauseMillis, duration);
+    }
+
+    private Map<Long, Long> allocatedBytesPerThread() {
+        final long[] ids = threads.getAllThreadIds();
+        final long[] allocated = threads.getThreadAllocatedBytes(ids);
+        final Map<Long, Long> result = new HashMap<>();
+        for (int i = 0; i < ids.length; i++) {
+            if (allocated[i] >= 0) {
+                result.put(ids[i], allocated[i]);
+            }
+        }
+        return result;
+    }
+}
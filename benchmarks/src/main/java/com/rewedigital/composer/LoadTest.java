@@ -0,0 +1,207 @@
+package com.rewedigital.composer;
+
+import static java.util.stream.Collectors.toList;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.spotify.apollo.Request;
+import com.spotify.apollo.Response;
+import com.spotify.apollo.Status;
+import com.spotify.apollo.test.ServiceHelper;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+
+import okio.ByteString;
+
+/**
+ * End-to-end load test: boots composer with a template route per {@link Scenario} against local {@link Backends} and
+ * reports throughput, latency percentiles, allocation rate and gc pauses per scenario. Each scenario is warmed up
+ * first, then a fixed number of clients sends requests back to back for the configured duration.
+ *
+ * <p>
+ * Requests are passed to composer in-process via the apollo {@link ServiceHelper}, composer itself fetches templates
+ * and fragments from the backends via http. Backends, composer and clients share the JVM, so run scenarios on a quiet
+ * machine and compare results of the same machine only.
+ *
+ * <pre>
+ * java --add-opens java.base/java.lang=ALL-UNNAMED \
+ *     [-Dloadtest.clients=16] [-Dloadtest.warmup=10] [-Dloadtest.duration=30] \
+ *     -cp benchmarks/target/benchmarks.jar com.rewedigital.composer.LoadTest [scenario ...]
+ * </pre>
+ *
+ * Without arguments all {@link Scenario#defaults()} are run, durations are in seconds. Guice needs
+ * <code>--add-opens</code> on Java 9 and later.
+ */
+public class LoadTest {
+
+    // keep a reference, otherwise the configured level is lost along with the logger
+    private static final Logger backendsLogger = Logger.getLogger(MockWebServer.class.getName());
+
+    /**
+     * Latencies and errors recorded by a client.
+     */
+    private static class Latencies {
+        private long[] nanos = new long[1024];
+        private int size = 0;
+        private long errors = 0;
+
+        private void add(final long latency) {
+            if (size == nanos.length) {
+                nanos = Arrays.copyOf(nanos, size * 2);
+            }
+            nanos[size++] = latency;
+        }
+
+        private Latencies merged(final Latencies other) {
+            final Latencies result = new Latencies();
+            result.nanos = Arrays.copyOf(nanos, size + other.size);
+            System.arraycopy(other.nanos, 0, result.nanos, size, other.size);
+            result.size = size + other.size;
+            result.errors = errors + other.errors;
+            return result;
+        }
+
+        private double percentileMillis(final double percentile) {
+            if (size == 0) {
+                return 0;
+            }
+            Arrays.sort(nanos, 0, size);
+            final int index = (int) Math.ceil(percentile / 100 * size) - 1;
+            return nanos[Math.max(index, 0)] / 1_000_000.0;
+        }
+    }
+
+    private final int clients = Integer.getInteger("loadtest.clients", 16);
+    private final long warmupNanos = TimeUnit.SECONDS.toNanos(Integer.getInteger("loadtest.warmup", 10));
+    private final long durationNanos = TimeUnit.SECONDS.toNanos(Integer.getInteger("loadtest.duration", 30));
+
+    private final ServiceHelper composer;
+    private final ExecutorService executor;
+    private final JvmStatistics jvm = new JvmStatistics();
+
+    public static void main(final String[] args) throws Exception {
+        // the backends log every request otherwise
+        backendsLogger.setLevel(Level.WARNING);
+
+        final List<Scenario> scenarios = selected(args);
+        final MockWebServer backends = new MockWebServer();
+        backends.setServerSocketFactory(Backends.serverSocketFactory());
+        backends.start();
+        backends.setDispatcher(new Backends(backends.url("/").toString(), scenarios));
+
+        final ServiceHelper composer = ComposerApplication.bootstrap(ServiceHelper::create, ServiceHelper::withModule)
+            .conf("composer.routing.local-routes", routes(backends, scenarios));
+        composer.start();
+        try {
+            new LoadTest(composer).run(scenarios);
+        } finally {
+            composer.close();
+            backends.shutdown();
+        }
+    }
+
+    private LoadTest(final ServiceHelper composer) {
+        this.composer = composer;
+        this.executor = Executors.newFixedThreadPool(clients);
+    }
+
+    private void run(final List<Scenario> scenarios) throws Exception {
+        try {
+            System.out.printf("%-16s %9s %7s %9s %9s %9s %9s %10s %6s %8s %8s%n", "scenario", "requests", "errors",
+                "req/s", "p50 ms", "p99 ms", "p999 ms", "alloc MB/s", "gcs", "gc ms", "max gc");
+            for (final Scenario scenario : scenarios) {
+                run(scenario);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void run(final Scenario scenario) throws Exception {
+        System.err.println("running " + scenario);
+        requests(scenario, warmupNanos);
+
+        jvm.reset();
+        final long start = System.nanoTime();
+        final Latencies latencies = requests(scenario, durationNanos);
+        final double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+        final JvmStatistics.Snapshot statistics = jvm.snapshot();
+
+        System.out.printf("%-16s %9d %7d %9.1f %9.2f %9.2f %9.2f %10.1f %6d %8d %8d%n", scenario.name(),
+            latencies.size, latencies.errors, latencies.size / seconds, latencies.percentileMillis(50),
+            latencies.percentileMillis(99), latencies.percentileMillis(99.9),
+            statistics.allocatedBytes() / seconds / (1024 * 1024), statistics.gcPauses(),
+            statistics.gcPauseMillis(), statistics.maxGcPauseMillis());
+    }
+
+    private Latencies requests(final Scenario scenario, final long nanos) throws Exception {
+        final long end = System.nanoTime() + nanos;
+        final List<Future<Latencies>> results = new ArrayList<>();
+        for (int i = 0; i < clients; i++) {
+            results.add(executor.submit(() -> client(scenario, end)));
+        }
+
+        Latencies result = new Latencies();
+        for (final Future<Latencies> client : results) {
+            result = result.merged(client.get());
+        }
+        return result;
+    }
+
+    private Latencies client(final Scenario scenario, final long end) throws Exception {
+        final Latencies result = new Latencies();
+        String sessionCookie = null;
+        while (System.nanoTime() < end) {
+            final Request request = sessionCookie == null ? Request.forUri(scenario.path())
+                : Request.forUri(scenario.path()).withHeader("Cookie", sessionCookie);
+
+            final long start = System.nanoTime();
+            final Response<ByteString> response = composer.request(request).toCompletableFuture().get();
+            result.add(System.nanoTime() - start);
+
+            if (response.status().code() != Status.OK.code()) {
+                result.errors++;
+            }
+            if (scenario.session()) {
+                sessionCookie = response.header("Set-Cookie").map(c -> c.split(";")[0]).orElse(sessionCookie);
+            }
+        }
+        return result;
+    }
+
+    private static List<Scenario> selected(final String[] names) {
+        final List<Scenario> defaults = Scenario.defaults();
+        if (names.length == 0) {
+            return defaults;
+        }
+        final List<String> selected = Arrays.asList(names);
+        final List<Scenario> result = defaults.stream().filter(s -> selected.contains(s.name())).collect(toList());
+        if (result.size() != selected.size()) {
+            throw new IllegalArgumentException("unknown scenario in " + selected + ", known scenarios are "
+                + defaults.stream().map(Scenario::name).collect(toList()));
+        }
+        return result;
+    }
+
+    private static List<Map<String, Object>> routes(final MockWebServer backends, final List<Scenario> scenarios) {
+        final List<Map<String, Object>> result = new ArrayList<>();
+        for (final Scenario scenario : scenarios) {
+            final Map<String, Object> route = new HashMap<>();
+            route.put("path", scenario.path());
+            route.put("method", "GET");
+            route.put("type", "TEMPLATE");
+            route.put("target", backends.url(Backends.templatePath(scenario)).toString());
+            result.add(route);
+        }
+        return result;
+    }
+}
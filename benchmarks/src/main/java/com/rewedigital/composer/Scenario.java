@@ -0,0 +1,135 @@
+package com.rewedigital.composer;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+
+/**
+ * A load test scenario: the shape of the template and its fragments as served by the {@link Backends} and how the
+ * load generating clients behave.
+ */
+class Scenario {
+
+    /**
+     * Latency of a backend response, log-normally distributed, which is the usual shape of service latencies.
+     */
+    static class Latency {
+
+        private static final double z99 = 2.326;
+
+        private final double median;
+        private final double sigma;
+
+        static Latency none() {
+            return new Latency(0, 0);
+        }
+
+        static Latency logNormal(final long medianMillis, final long p99Millis) {
+            return new Latency(medianMillis, Math.log((double) p99Millis / medianMillis) / z99);
+        }
+
+        private Latency(final double median, final double sigma) {
+            this.median = median;
+            this.sigma = sigma;
+        }
+
+        long sampleMillis(final Random random) {
+            return Math.round(median * Math.exp(sigma * random.nextGaussian()));
+        }
+
+        @Override
+        public String toString() {
+            return median <= 0 ? "none" : String.format("p50 %.0fms, p99 %.0fms", median, median * Math.exp(sigma * z99));
+        }
+    }
+
+    private final String name;
+    private final int templateSize;
+    private final int includes;
+    private final int depth;
+    private final int fragmentSize;
+    private final Latency latency;
+    private final String cacheControl;
+    private final boolean session;
+
+    static List<Scenario> defaults() {
+        final Latency latency = Latency.logNormal(5, 50);
+        return Arrays.asList(
+            new Scenario("composition", 51_200, 20, 1, 5_120, latency, "no-store", false),
+            new Scenario("many-includes", 102_400, 200, 1, 5_120, latency, "no-store", false),
+            new Scenario("nested", 51_200, 20, 3, 5_120, latency, "no-store", false),
+            new Scenario("cached", 51_200, 20, 1, 5_120, latency, "max-age=60", false),
+            new Scenario("session", 51_200, 20, 1, 5_120, latency, "no-store", true));
+    }
+
+    Scenario(final String name, final int templateSize, final int includes, final int depth,
+        final int fragmentSize, final Latency latency, final String cacheControl, final boolean session) {
+        this.name = Objects.requireNonNull(name);
+        this.templateSize = templateSize;
+        this.includes = includes;
+        this.depth = depth;
+        this.fragmentSize = fragmentSize;
+        this.latency = Objects.requireNonNull(latency);
+        this.cacheControl = Objects.requireNonNull(cacheControl);
+        this.session = session;
+    }
+
+    String name() {
+        return name;
+    }
+
+    /**
+     * The path composer serves this scenario on.
+     */
+    String path() {
+        return "/" + name;
+    }
+
+    int templateSize() {
+        return templateSize;
+    }
+
+    /**
+     * Number of includes in the template.
+     */
+    int includes() {
+        return includes;
+    }
+
+    /**
+     * Depth of the fragment includes, fragments above this depth include one more fragment each.
+     */
+    int depth() {
+        return depth;
+    }
+
+    int fragmentSize() {
+        return fragmentSize;
+    }
+
+    Latency latency() {
+        return latency;
+    }
+
+    /**
+     * The <code>Cache-Control</code> header of template and fragment responses.
+     */
+    String cacheControl() {
+        return cacheControl;
+    }
+
+    /**
+     * Whether clients send the session cookie they received back with the next request.
+     */
+    boolean session() {
+        return session;
+    }
+
+    @Override
+    public String toString() {
+        return name + " (template: " + templateSize + " bytes, includes: " + includes + ", depth: " + depth
+            + ", fragments: " + fragmentSize + " bytes, latency: " + latency + ", cache-control: " + cacheControl
+            + ", session: " + session + ")";
+    }
+}
@@ -0,0 +1,116 @@
+package com.rewedigital.composer.caching;
+
+import static java.util.concurrent.CompletableFuture.completedFuture;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.io.Closer;
+import com.rewedigital.composer.application.DefaultConfiguration;
+import com.spotify.apollo.Client;
+import com.spotify.apollo.Environment;
+import com.spotify.apollo.Request;
+import com.spotify.apollo.Response;
+import com.spotify.apollo.environment.IncomingRequestAwareClient;
+import com.typesafe.config.Config;
+
+import okio.ByteString;
+
+/**
+ * Measures the overhead of {@link HttpCache#withCaching(Request, Optional, IncomingRequestAwareClient)} for cache hits
+ * and for responses that are fetched from a stubbed upstream because they must not be cached.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HttpCacheBenchmark {
+
+    /**
+     * Only provides the configuration, which is all the cache needs.
+     */
+    private static class ConfigEnvironment implements Environment {
+
+        private final Config config;
+
+        private ConfigEnvironment(final Config config) {
+            this.config = config;
+        }
+
+        @Override
+        public Config config() {
+            return config;
+        }
+
+        @Override
+        public String domain() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Client client() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public RoutingEngine routingEngine() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Closer closer() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public <T> T resolve(final Class<T> clazz) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private final Request cached = Request.forUri("http://backend/cached");
+    private final Request uncached = Request.forUri("http://backend/uncached");
+
+    private HttpCache cache;
+    private IncomingRequestAwareClient client;
+
+    @Setup
+    public void setup() throws Exception {
+        final Environment environment = new ConfigEnvironment(DefaultConfiguration.defaultConfiguration());
+        cache = new HttpCache(() -> environment);
+
+        final Response<ByteString> cachable = response("max-age=3600");
+        final Response<ByteString> notCachable = response("no-store");
+        client = (request, incoming) -> completedFuture(request.equals(cached) ? cachable : notCachable);
+
+        cache.withCaching(cached, Optional.empty(), client).toCompletableFuture().get();
+    }
+
+    @Benchmark
+    public Response<ByteString> hit() throws Exception {
+        return cache.withCaching(cached, Optional.empty(), client).toCompletableFuture().get();
+    }
+
+    @Benchmark
+    public Response<ByteString> miss() throws Exception {
+        return cache.withCaching(uncached, Optional.empty(), client).toCompletableFuture().get();
+    }
+
+    private static Response<ByteString> response(final String cacheControl) {
+        return Response.forPayload(ByteString.encodeUtf8("<html><body>content</body></html>"))
+            .withHeader("Cache-Control", cacheControl);
+    }
+}
@@ -0,0 +1,116 @@
+package com.rewedigital.composer.composing;
+
+import static java.util.concurrent.CompletableFuture.completedFuture;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.rewedigital.composer.application.DefaultConfiguration;
+import com.rewedigital.composer.html.ComposableBodyRoot;
+import com.rewedigital.composer.html.Markup;
+import com.rewedigital.composer.html.ParseCache;
+import com.rewedigital.composer.session.SessionRoot;
+import com.spotify.apollo.Response;
+
+/**
+ * Composes a template with <code>includes</code> includes, each included fragment includes another one until
+ * <code>depth</code> is reached. Fragments are served by a stubbed {@link ContentFetcher}, so no network is involved and
+ * results are reproducible offline.
+ *
+ * <p>
+ * <code>compose</code> measures the whole composition (parsing, fetching, assembling the response),
+ * <code>assemble</code> only writes the already composed response.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompositionBenchmark {
+
+    /**
+     * Serves fragments without network calls, fragments include another fragment until the given depth is reached.
+     */
+    private static class StubContentFetcher implements ContentFetcher {
+
+        private final int depth;
+        private final Response<ComposablePayload> nested;
+        private final Response<ComposablePayload> leaf;
+
+        private StubContentFetcher(final int depth, final int fragmentSize) {
+            this.depth = depth;
+            this.nested = Response.forPayload(ComposablePayload.ofUtf8(Markup.fragment(fragmentSize, 1)));
+            this.leaf = Response.forPayload(ComposablePayload.ofUtf8(Markup.fragment(fragmentSize, 0)));
+        }
+
+        @Override
+        public CompletableFuture<Response<ComposablePayload>> fetch(final String path,
+            final Supplier<ComposablePayload> fallback, final Optional<Duration> ttl, final CompositionStep step) {
+            return completedFuture(step.depth() < depth ? nested : leaf);
+        }
+    }
+
+    @Param({"102400"})
+    private int size;
+
+    @Param({"10240"})
+    private int fragmentSize;
+
+    @Param({"20", "200"})
+    private int includes;
+
+    @Param({"1", "5"})
+    private int depth;
+
+    @Param({"false", "true"})
+    private boolean parseCache;
+
+    private ComposerHtmlConfiguration configuration;
+    private ParseCache cache;
+    private ContentFetcher contentFetcher;
+    private Response<ComposablePayload> template;
+    private ComposingResponse<ComposablePayload> composed;
+
+    @Setup
+    public void setup() throws Exception {
+        configuration = ComposerHtmlConfiguration
+            .fromConfig(DefaultConfiguration.defaultConfiguration().getConfig("composer.html"));
+        cache = parseCache ? ParseCache.create(configuration) : ParseCache.disabled();
+        contentFetcher = new StubContentFetcher(depth, fragmentSize);
+        template = Response.forPayload(ComposablePayload.ofUtf8(Markup.template(size, includes, includes)));
+        composed = composer().composeTemplate().get();
+    }
+
+    @Benchmark
+    public Response<ComposablePayload> compose() throws Exception {
+        return composer().composeTemplate().get().composedResponse();
+    }
+
+    @Benchmark
+    public Response<ComposablePayload> assemble() {
+        return composed.composedResponse();
+    }
+
+    private Composer composer() {
+        final ResponseComposition composition = ResponseComposition
+            .of(Arrays.asList(ComposableBodyRoot.of(configuration, cache), SessionRoot.empty()));
+        return new Composer(contentFetcher, ComposingResponse.of(template, composition), "/template");
+    }
+}
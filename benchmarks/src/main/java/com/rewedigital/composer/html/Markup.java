@@ -0,0 +1,78 @@
+package com.rewedigital.composer.html;
+
+/**
+ * Generates synthetic markup for benchmarks using the default tag names.
+ */
+public class Markup {
+
+    private static final String filler = "<div class=\"product-tile\"><a href=\"/p/123\">Product</a>"
+        + "<span class=\"price\">1,99 &euro;</span></div>\n";
+
+    /**
+     * Creates a content fragment of about <code>size</code> characters with <code>includes</code> include tags spread
+     * evenly over the content. Markup outside of the content tag has the same size as the content itself.
+     */
+    public static String fragment(final int size, final int includes) {
+        return fragment(size, includes, "/fragment");
+    }
+
+    /**
+     * Creates a content fragment like {@link #fragment(int, int)} with includes of <code>path</code>.
+     */
+    public static String fragment(final int size, final int includes, final String path) {
+        final String content = content(size / 2, includes, path);
+        final String outside = filler(size - content.length());
+        return "<html><head><title>fragment</title></head><body>"
+            + "<rewe-digital-content>" + content + "</rewe-digital-content>"
+            + outside + "</body></html>";
+    }
+
+    /**
+     * Creates a template of about <code>size</code> characters with <code>includes</code> include tags spread evenly
+     * over the body.
+     */
+    public static String template(final int size, final int includes) {
+        return template(size, includes, 0);
+    }
+
+    /**
+     * Creates a template like {@link #template(int, int)} with <code>assets</code> links in the head section, every
+     * other one marked for inclusion.
+     */
+    public static String template(final int size, final int includes, final int assets) {
+        return template(size, includes, assets, "/fragment");
+    }
+
+    /**
+     * Creates a template like {@link #template(int, int, int)} with includes of <code>path</code>.
+     */
+    public static String template(final int size, final int includes, final int assets, final String path) {
+        final StringBuilder head = new StringBuilder("<head><title>template</title>");
+        for (int i = 0; i < assets; i++) {
+            head.append("<link rel=\"stylesheet\" href=\"/css/").append(i).append(".css\"")
+                .append(i % 2 == 0 ? " data-rd-options=\"include\"" : "").append("/>");
+        }
+        head.append("</head>");
+        return "<html>" + head + "<body>" + content(size, includes, path) + "</body></html>";
+    }
+
+    public static String content(final int size, final int includes, final String path) {
+        final StringBuilder result = new StringBuilder(size + includes * 100);
+        final int slice = size / (includes + 1);
+        for (int i = 0; i < includes; i++) {
+            result.append(filler(slice));
+            result.append("<rewe-digital-include path=\"").append(path).append("/").append(i).append("\">")
+                .append("<rewe-digital-content>fallback</rewe-digital-content></rewe-digital-include>");
+        }
+        result.append(filler(size - result.length()));
+        return result.toString();
+    }
+
+    private static String filler(final int size) {
+        final StringBuilder result = new StringBuilder(Math.max(size, 0));
+        while (result.length() + filler.length() <= size) {
+            result.append(filler);
+        }
+        return result.toString();
+    }
+}
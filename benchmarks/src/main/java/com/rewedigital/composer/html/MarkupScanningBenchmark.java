@@ -0,0 +1,60 @@
+package com.rewedigital.composer.html;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.rewedigital.composer.application.DefaultConfiguration;
+import com.rewedigital.composer.composing.ComposerHtmlConfiguration;
+
+import okio.ByteString;
+
+/**
+ * Compares the pre-scan of include free content fragments with a full parse of the same markup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MarkupScanningBenchmark {
+
+    @Param({"10240", "102400"})
+    private int size;
+
+    private ComposerHtmlConfiguration configuration;
+    private MarkupScanner scanner;
+    private ByteString fragment;
+
+    @Setup
+    public void setup() {
+        configuration = ComposerHtmlConfiguration
+            .fromConfig(DefaultConfiguration.defaultConfiguration().getConfig("composer.html"));
+        scanner = new MarkupScanner(configuration);
+        fragment = ByteString.encodeUtf8(Markup.fragment(size, 0));
+    }
+
+    @Benchmark
+    public ParsedTemplate scan() {
+        return scanner.scan(fragment, ContentRange.empty()).get();
+    }
+
+    @Benchmark
+    public ParsedTemplate parse() {
+        final Utf8Markup markup = Utf8Markup.decode(fragment);
+        final IncludeMarkupHandler handler = new IncludeMarkupHandler(ContentRange.empty(), configuration, markup);
+        Parser.PARSER.parse(markup, handler);
+        return handler.result();
+    }
+}
@@ -0,0 +1,68 @@
+package com.rewedigital.composer.html;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.rewedigital.composer.application.DefaultConfiguration;
+import com.rewedigital.composer.composing.ComposerHtmlConfiguration;
+
+import okio.ByteString;
+
+/**
+ * Parses templates with a growing number of includes and assets as well as content fragments, where parsing stops at
+ * the end of the content. Run with <code>-prof gc</code> to see the allocations per parsed template.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParsingBenchmark {
+
+    @Param({"10240", "102400", "2097152"})
+    private int size;
+
+    @Param({"0", "20", "200"})
+    private int includes;
+
+    private ComposerHtmlConfiguration configuration;
+    private ByteString template;
+    private ByteString fragment;
+
+    @Setup
+    public void setup() {
+        configuration = ComposerHtmlConfiguration
+            .fromConfig(DefaultConfiguration.defaultConfiguration().getConfig("composer.html"));
+        template = ByteString.encodeUtf8(Markup.template(size, includes, includes));
+        fragment = ByteString.encodeUtf8(Markup.fragment(size, includes));
+    }
+
+    @Benchmark
+    public ParsedTemplate parse() {
+        final Utf8Markup markup = Utf8Markup.decode(template);
+        final IncludeMarkupHandler handler = new IncludeMarkupHandler(ContentRange.allUpToo(template.size()),
+            configuration, markup);
+        Parser.PARSER.parse(markup, handler);
+        return handler.result();
+    }
+
+    @Benchmark
+    public ParsedTemplate parseFragment() {
+        final Utf8Markup markup = Utf8Markup.decode(fragment);
+        final IncludeMarkupHandler handler = new IncludeMarkupHandler(ContentRange.empty(), configuration, markup);
+        Parser.PARSER.parse(markup, handler);
+        return handler.result();
+    }
+}
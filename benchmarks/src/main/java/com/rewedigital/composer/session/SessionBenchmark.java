@@ -0,0 +1,63 @@
+package com.rewedigital.composer.session;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.rewedigital.composer.application.DefaultConfiguration;
+import com.spotify.apollo.Request;
+import com.spotify.apollo.Response;
+
+/**
+ * Reads and writes the signed session cookie of the {@link CookieBasedSessionHandler} for sessions with a growing
+ * number of attributes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SessionBenchmark {
+
+    @Param({"1", "20"})
+    private int attributes;
+
+    private CookieBasedSessionHandler handler;
+    private Map<String, String> session;
+    private Request request;
+
+    @Setup
+    public void setup() {
+        handler = new CookieBasedSessionHandler(SessionConfiguration
+            .fromConfig(DefaultConfiguration.defaultConfiguration().getConfig("composer.session")));
+        session = new HashMap<>();
+        for (int i = 0; i < attributes; i++) {
+            session.put("x-rd-attribute-" + i, "value-" + i);
+        }
+        final String cookie = write().header("Set-Cookie").get();
+        request = Request.forUri("/").withHeader("Cookie", cookie);
+    }
+
+    @Benchmark
+    public SessionRoot read() {
+        return handler.obtainSession(request);
+    }
+
+    @Benchmark
+    public Response<?> write() {
+        return handler.writeTo(Response.ok(), session, true);
+    }
+}
@@ -10,6 +10,7 @@ import com.rewedigital.composer.application.ProxyHeaderMiddleware;
 import com.rewedigital.composer.application.RequestHandler;
 import com.rewedigital.composer.application.RequestHandlerFactory;
 import com.rewedigital.composer.caching.HttpCacheModule;
+import com.rewedigital.composer.client.CircuitBreakingClientDecoratingModule;
 import com.rewedigital.composer.client.ErrorHandlingClientDecoratingModule;
 import com.rewedigital.composer.client.WithIncomingHeadersClientDecoratingModule;
 import com.spotify.apollo.AppInit;
@@ -19,6 +20,7 @@ import com.spotify.apollo.httpservice.HttpService;
 import com.spotify.apollo.httpservice.LoadingException;
 import com.spotify.apollo.module.ApolloModule;
 import com.spotify.apollo.route.Route;
+import com.spotify.metrics.core.SemanticMetricRegistry;
 import com.typesafe.config.Config;
 
 public class ComposerApplication {
@@ -45,10 +47,14 @@ public class ComposerApplication {
         return result;
     }
 
+    /**
+     * Client decorators are applied in the order of their modules, the last one being the outermost: the circuit
+     * breaker sits below the cache, so cached and stale responses are still served while a circuit is open.
+     */
     private static List<ApolloModule> additionalModules() {
         return Arrays.asList(
             WithIncomingHeadersClientDecoratingModule.create(), ErrorHandlingClientDecoratingModule.create(),
-            HttpCacheModule.create());
+            CircuitBreakingClientDecoratingModule.create(), HttpCacheModule.create());
     }
 
        private static class Initializer {
@@ -56,7 +62,8 @@ public class ComposerApplication {
         static void init(final Environment environment) {
             final Config configuration = withDefaults(environment.config());
 
-            final RequestHandler handler = RequestHandlerFactory.createRequestHandler(configuration);
+            final RequestHandler handler = RequestHandlerFactory.createRequestHandler(configuration,
+                environment.resolve(SemanticMetricRegistry.class));
 
             registerRoutes(environment, handler, "/");
             registerRoutes(environment, handler, "/<path:path>");
@@ -2,11 +2,19 @@ package com.rewedigital.composer.application;
 
 import java.util.Map;
 
+import com.rewedigital.composer.composing.ComposablePayload;
 import com.rewedigital.composer.composing.Composer;
 import com.rewedigital.composer.composing.ComposerHtmlConfiguration;
 import com.rewedigital.composer.composing.ComposingResponse;
+import com.rewedigital.composer.composing.Deadline;
+import com.rewedigital.composer.composing.FetchScheduler;
+import com.rewedigital.composer.composing.Hedging;
+import com.rewedigital.composer.composing.HedgingConfiguration;
 import com.rewedigital.composer.composing.TemplateComposer;
+import com.rewedigital.composer.composing.Trace;
+import com.rewedigital.composer.routing.PathTemplates;
 import com.spotify.apollo.Client;
+import com.spotify.metrics.core.SemanticMetricRegistry;
 import com.typesafe.config.Config;
 
 /**
@@ -15,20 +23,33 @@ import com.typesafe.config.Config;
  */
 public class ComposerFactory implements TemplateComposer.Factory {
 
+    private static final int maxIncludePathTemplates = 1_000;
+
     private final ComposerHtmlConfiguration configuration;
+    private final PathTemplates includePathTemplates = PathTemplates.create(maxIncludePathTemplates);
+    private final FetchScheduler fetchScheduler;
+    private final Hedging hedging;
 
     public ComposerFactory(final Config configuration) {
         this.configuration = ComposerHtmlConfiguration.fromConfig(configuration);
+        this.fetchScheduler = FetchScheduler.create(this.configuration.maxConcurrentFetches());
+        this.hedging = Hedging.create(HedgingConfiguration.fromConfig(configuration.getConfig("fetch.hedging")));
+    }
+
+    public void registerMetrics(final SemanticMetricRegistry registry) {
+        hedging.registerMetrics(registry);
     }
 
     @Override
     public TemplateComposer build(final Client client, final String path, final Map<String, Object> parsedPathArguments,
-            final ComposingResponse<String> composingResponse) {
+            final ComposingResponse<ComposablePayload> composingResponse, final Deadline deadline,
+            final Trace trace) {
 
         final ValidatingContentFetcher contentFetcher = new ValidatingContentFetcher(client, parsedPathArguments,
-                composingResponse.requestEnricher(), configuration.maxRecursion());
+                composingResponse.requestEnricher(), configuration.maxRecursion(), includePathTemplates,
+                fetchScheduler.page(configuration.maxConcurrentFetchesPerPage()), hedging);
 
-        return new Composer(contentFetcher, composingResponse, path);
+        return new Composer(contentFetcher, composingResponse, path, deadline, trace);
     }
 
 }
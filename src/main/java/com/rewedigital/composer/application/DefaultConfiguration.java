@@ -26,9 +26,33 @@ public class DefaultConfiguration {
         result.put("composer.html.content-tag", "rewe-digital-content");
         result.put("composer.html.asset-options-attribute", "data-rd-options");
         result.put("composer.html.max-recursion", 5);
+        result.put("composer.html.parse-cache.enabled", true);
+        result.put("composer.html.parse-cache.max-bytes", 64 * 1024 * 1024);
+        result.put("composer.html.fetch.max-concurrent", 1_000);
+        result.put("composer.html.fetch.max-concurrent-per-page", 20);
+        result.put("composer.html.fetch.hedging.enabled", false);
+        result.put("composer.html.fetch.hedging.delay", 100);
+        result.put("composer.html.fetch.hedging.percentile", 95);
+        result.put("composer.html.fetch.hedging.max-ratio", 0.05);
+        result.put("composer.html.trace.enabled", true);
+        result.put("composer.html.trace.server-timing", false);
+        result.put("composer.html.trace.log-threshold", 1_000);
+        result.put("composer.html.trace.max-steps", 64);
+        result.put("composer.html.trace.slowest", 3);
 
         result.put("composer.http.cache.enabled", true);
         result.put("composer.http.cache.size", 10_000);
+        result.put("composer.http.cache.stale-while-revalidate", 0);
+        result.put("composer.http.cache.stale-if-error", 0);
+        result.put("composer.http.cache.max-stale", 3_600);
+
+        result.put("composer.http.circuit-breaker.enabled", false);
+        result.put("composer.http.circuit-breaker.window", 10_000);
+        result.put("composer.http.circuit-breaker.minimum-calls", 20);
+        result.put("composer.http.circuit-breaker.failure-rate", 0.5);
+        result.put("composer.http.circuit-breaker.slow-call", 2_000);
+        result.put("composer.http.circuit-breaker.open-duration", 5_000);
+        result.put("composer.http.circuit-breaker.probes", 3);
 
         result.put("composer.session.enabled", Boolean.TRUE);
         result.put("composer.session.cookie", "rdsession");
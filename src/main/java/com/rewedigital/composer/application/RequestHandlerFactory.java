@@ -7,13 +7,17 @@ import java.util.concurrent.CompletionStage;
 import com.rewedigital.composer.composing.ComposerHtmlConfiguration;
 import com.rewedigital.composer.composing.ResponseComposition;
 import com.rewedigital.composer.composing.ResponseCompositionHandler;
+import com.rewedigital.composer.composing.Tracing;
+import com.rewedigital.composer.composing.TracingConfiguration;
 import com.rewedigital.composer.html.ComposableBodyRoot;
+import com.rewedigital.composer.html.ParseCache;
 import com.rewedigital.composer.routing.BackendRouting;
 import com.rewedigital.composer.routing.CompositionAwareRequestClient;
 import com.rewedigital.composer.routing.RouteTypes;
 import com.rewedigital.composer.session.CookieBasedSessionHandler;
 import com.rewedigital.composer.session.SessionHandler;
 import com.spotify.apollo.RequestContext;
+import com.spotify.metrics.core.SemanticMetricRegistry;
 import com.typesafe.config.Config;
 
 /**
@@ -26,33 +30,40 @@ public class RequestHandlerFactory {
 
         private final SessionHandler sessionHandler;
         private final ComposerHtmlConfiguration htmlConfig;
+        private final ParseCache parseCache;
 
-        public CompositionHandler(final SessionHandler sessionHandler, final Config htmlConfig) {
+        public CompositionHandler(final SessionHandler sessionHandler, final Config htmlConfig,
+                final SemanticMetricRegistry metrics) {
             this.sessionHandler = sessionHandler;
             this.htmlConfig = ComposerHtmlConfiguration.fromConfig(htmlConfig);
+            this.parseCache = ParseCache.create(this.htmlConfig);
+            this.parseCache.registerMetrics(metrics);
         }
 
         @Override
         public CompletionStage<ResponseComposition> initializeFrom(final RequestContext context) {
             return sessionHandler.initialize(context)
                     .thenApply(session -> ResponseComposition.of(asList(
-                            ComposableBodyRoot.of(htmlConfig),
+                            ComposableBodyRoot.of(htmlConfig, parseCache),
                             session)));
         }
     }
 
-    public static RequestHandler createRequestHandler(final Config configuration) {
+    public static RequestHandler createRequestHandler(final Config configuration,
+            final SemanticMetricRegistry metrics) {
         final Config routingConfig = configuration.getConfig("composer.routing");
         final Config htmlConfig = configuration.getConfig("composer.html");
         final Config sessionConfig = configuration.getConfig("composer.session");
 
         final BackendRouting routing = new BackendRouting(routingConfig);
         final ComposerFactory composerFactory = new ComposerFactory(htmlConfig);
+        composerFactory.registerMetrics(metrics);
         final CompositionAwareRequestClient templateClient = new CompositionAwareRequestClient();
-        final RouteTypes routeTypes = new RouteTypes(composerFactory, templateClient);
+        final Tracing tracing = Tracing.create(TracingConfiguration.fromConfig(htmlConfig.getConfig("trace")));
+        final RouteTypes routeTypes = new RouteTypes(composerFactory, templateClient, tracing);
 
         final SessionHandler sessionHandler = CookieBasedSessionHandler.create(sessionConfig);
-        final ResponseCompositionHandler compositionHandler = new CompositionHandler(sessionHandler, htmlConfig);
+        final ResponseCompositionHandler compositionHandler = new CompositionHandler(sessionHandler, htmlConfig, metrics);
 
         return new RequestHandler(routing, routeTypes, compositionHandler);
     }
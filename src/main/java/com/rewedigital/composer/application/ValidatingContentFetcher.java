@@ -6,17 +6,26 @@ import java.time.Duration;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.damnhandy.uri.template.UriTemplate;
+import com.rewedigital.composer.caching.HttpCache;
+import com.rewedigital.composer.composing.ComposablePayload;
 import com.rewedigital.composer.composing.CompositionStep;
 import com.rewedigital.composer.composing.ContentFetcher;
+import com.rewedigital.composer.composing.FetchScheduler;
+import com.rewedigital.composer.composing.Hedging;
 import com.rewedigital.composer.composing.RequestEnricher;
+import com.rewedigital.composer.composing.Trace;
+import com.rewedigital.composer.routing.PathTemplates;
 import com.spotify.apollo.Client;
 import com.spotify.apollo.Request;
 import com.spotify.apollo.Response;
+import com.spotify.apollo.Status;
 import com.spotify.apollo.StatusType.Family;
 
 import okio.ByteString;
@@ -29,48 +38,118 @@ public class ValidatingContentFetcher implements ContentFetcher {
     private final Map<String, Object> parsedPathArguments;
     private final RequestEnricher requestEnricher;
     private final int maxRecursion;
+    private final PathTemplates pathTemplates;
+    private final FetchScheduler.Page fetches;
+    private final Hedging hedging;
+    private final Map<String, CompletableFuture<Response<ByteString>>> responses = new ConcurrentHashMap<>();
 
     public ValidatingContentFetcher(final Client client, final Map<String, Object> parsedPathArguments,
-            final RequestEnricher requestEnricher, final int maxRecursion) {
+            final RequestEnricher requestEnricher, final int maxRecursion, final PathTemplates pathTemplates,
+            final FetchScheduler.Page fetches, final Hedging hedging) {
         this.requestEnricher = requireNonNull(requestEnricher);
         this.client = requireNonNull(client);
         this.parsedPathArguments = requireNonNull(parsedPathArguments);
         this.maxRecursion = maxRecursion;
+        this.pathTemplates = requireNonNull(pathTemplates);
+        this.fetches = requireNonNull(fetches);
+        this.hedging = requireNonNull(hedging);
     }
 
     @Override
-    public CompletableFuture<Response<String>> fetch(final String path, final String fallback,
+    public CompletableFuture<Response<ComposablePayload>> fetch(final String path, final Supplier<ComposablePayload> fallback,
             final Optional<Duration> ttl, final CompositionStep step) {
         if (maxRecursion < step.depth()) {
             LOGGER.warn("Max recursion depth exceeded for " + step.callStack());
-            return CompletableFuture.completedFuture(Response.forPayload(fallback));
+            return CompletableFuture.completedFuture(Response.forPayload(fallback.get()));
         }
 
         if (isEmpty(path)) {
             LOGGER.warn("Empty path attribute in include found - callstack: " + step.callStack());
-            return CompletableFuture.completedFuture(Response.forPayload(""));
+            return CompletableFuture.completedFuture(Response.forPayload(ComposablePayload.empty()));
         }
 
-        final String expandedPath = UriTemplate.fromTemplate(path).expand(parsedPathArguments);
-        final Request request = requestEnricher.enrich(withTtl(Request.forUri(expandedPath, "GET"), ttl));
+        if (step.deadline().isExpired()) {
+            LOGGER.warn("Budget of page exhausted, using fallback for " + step.callStack());
+            return CompletableFuture.completedFuture(Response.forPayload(fallback.get()));
+        }
 
-        return client.send(request)
-                .thenApply(response -> acceptHtmlOnly(response, expandedPath))
+        final String expandedPath = pathTemplates.get(path).expand(parsedPathArguments);
+        final Request request = requestEnricher.enrich(Request.forUri(expandedPath, "GET"));
+
+        return fetchOnce(path, request, ttl, step)
                 .thenApply(response -> acceptOkStatusOnly(response, expandedPath))
-                .thenApply(r -> toStringPayload(r, fallback))
-                .toCompletableFuture();
+                .thenApply(response -> acceptHtmlOnly(response, expandedPath))
+                .thenApply(r -> toComposablePayload(r, fallback));
+    }
+
+    /**
+     * Identical includes of a page share a single fetch, regardless of where they occur in the page. Includes are only
+     * identical if they have the same ttl, so no include waits longer than its own ttl allows.
+     */
+    private CompletableFuture<Response<ByteString>> fetchOnce(final String path, final Request request,
+            final Optional<Duration> ttl, final CompositionStep step) {
+        final CompletableFuture<Response<ByteString>> result = new CompletableFuture<>();
+        final CompletableFuture<Response<ByteString>> fetched = responses.putIfAbsent(includeKey(request, ttl), result);
+        if (fetched != null) {
+            LOGGER.debug("Reusing response of [{}] for {}", request.uri(), step.callStack());
+            step.record(Trace.Event.FETCH_SHARED);
+            return fetched;
+        }
+
+        fetches.schedule(step, () -> send(path, request, ttl, step)).whenComplete((response, ex) -> {
+            step.record(Trace.Event.FETCH_END);
+            if (ex != null) {
+                result.completeExceptionally(ex);
+            } else {
+                result.complete(response);
+            }
+        });
+        return result;
+    }
+
+    private static String includeKey(final Request request, final Optional<Duration> ttl) {
+        return request.uri() + " " + request.headerEntries() + " " + ttl.map(Duration::toMillis).orElse(-1L);
+    }
+
+    private CompletionStage<Response<ByteString>> send(final String path, final Request request,
+            final Optional<Duration> ttl, final CompositionStep step) {
+        // queued fetches may have used up the budget while waiting
+        if (step.deadline().isExpired()) {
+            LOGGER.warn("Budget of page exhausted, using fallback for " + step.callStack());
+            return CompletableFuture.completedFuture(Response.forStatus(Status.GATEWAY_TIMEOUT));
+        }
+        step.record(Trace.Event.FETCH_START);
+        return hedging.send(path, () -> client.send(withTtl(request, step.deadline().limit(ttl))),
+                () -> fetches.schedule(step, () -> hedge(request, ttl, step)),
+                () -> !step.deadline().isExpired());
+    }
+
+    /**
+     * A hedged request needs its own fetch slot and must not be coalesced with the request it hedges by the
+     * {@link HttpCache}, otherwise it could never answer first.
+     */
+    private CompletionStage<Response<ByteString>> hedge(final Request request, final Optional<Duration> ttl,
+            final CompositionStep step) {
+        final Request hedged = request.withHeader(HttpCache.noCoalescingHeader, "true");
+        return client.send(withTtl(hedged, step.deadline().limit(ttl)));
     }
 
     private Request withTtl(final Request request, final Optional<Duration> ttl) {
         return ttl.map(t -> request.withTtl(t)).orElse(request);
     }
 
-    private Response<String> toStringPayload(final Response<ByteString> response, final String fallback) {
-        final String value = response.payload().map(p -> p.utf8()).orElse(fallback);
+    private Response<ComposablePayload> toComposablePayload(final Response<ByteString> response,
+            final Supplier<ComposablePayload> fallback) {
+        final ComposablePayload value = response.payload()
+                .map(ComposablePayload::of)
+                .orElseGet(fallback);
         return response.withPayload(value);
     }
 
     private Response<ByteString> acceptHtmlOnly(final Response<ByteString> response, final String expandedPath) {
+        if (!response.payload().isPresent()) {
+            return response;
+        }
         final String contentType = response.header("Content-Type").orElse("other");
         if (contentType != null && contentType.contains("text/html")) {
             return response;
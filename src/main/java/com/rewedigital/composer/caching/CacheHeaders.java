@@ -2,6 +2,7 @@ package com.rewedigital.composer.caching;
 
 import java.util.List;
 import java.util.Map.Entry;
+import java.util.Optional;
 
 import com.spotify.apollo.Request;
 import com.spotify.apollo.Response;
@@ -17,7 +18,7 @@ public class CacheHeaders {
 
     public static CacheControl of(final Response<ByteString> response) {
         if (response == null) {
-            new CacheControl.Builder().build();
+            return new CacheControl.Builder().build();
         }
 
         return of(response.headerEntries());
@@ -27,6 +28,39 @@ public class CacheHeaders {
         return of(request.headerEntries());
     }
 
+    /**
+     * The value of the &quot;stale-while-revalidate&quot; extension (RFC 5861) of the cache-control header.
+     */
+    public static Optional<Long> staleWhileRevalidateSeconds(final Response<ByteString> response) {
+        return extensionSeconds(response, "stale-while-revalidate");
+    }
+
+    /**
+     * The value of the &quot;stale-if-error&quot; extension (RFC 5861) of the cache-control header.
+     */
+    public static Optional<Long> staleIfErrorSeconds(final Response<ByteString> response) {
+        return extensionSeconds(response, "stale-if-error");
+    }
+
+    private static Optional<Long> extensionSeconds(final Response<ByteString> response, final String name) {
+        for (final Entry<String, String> entry : response.headerEntries()) {
+            if (!"Cache-Control".equalsIgnoreCase(entry.getKey())) {
+                continue;
+            }
+            for (final String directive : entry.getValue().split(",")) {
+                final String[] parts = directive.trim().split("=", 2);
+                if (parts.length == 2 && name.equalsIgnoreCase(parts[0].trim())) {
+                    try {
+                        return Optional.of(Math.max(0, Long.parseLong(parts[1].trim().replace("\"", ""))));
+                    } catch (final NumberFormatException e) {
+                        return Optional.empty();
+                    }
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
     private static CacheControl of(final List<Entry<String, String>> headerEntries) {
         Headers.Builder builder = new Headers.Builder();
         for (final Entry<String, String> entry : headerEntries) {
@@ -3,10 +3,16 @@ package com.rewedigital.composer.caching;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.BiConsumer;
 import java.util.function.Function;
 import java.util.function.Supplier;
@@ -14,6 +20,7 @@ import java.util.function.Supplier;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.codahale.metrics.Gauge;
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
 import com.github.benmanes.caffeine.cache.Expiry;
@@ -26,8 +33,11 @@ import com.spotify.apollo.Request;
 import com.spotify.apollo.Response;
 import com.spotify.apollo.Status;
 import com.spotify.apollo.StatusType;
+import com.spotify.apollo.StatusType.Family;
 import com.spotify.apollo.environment.IncomingRequestAwareClient;
 import com.spotify.ffwd.http.okhttp3.CacheControl;
+import com.spotify.metrics.core.MetricId;
+import com.spotify.metrics.core.SemanticMetricRegistry;
 
 import okio.ByteString;
 
@@ -39,6 +49,20 @@ import okio.ByteString;
  * of the request to for example bypass the cache if &quot;no-cache&quot; is send.
  *
  * <p>
+ * Responses may be served after they expired according to the &quot;stale-while-revalidate&quot; and
+ * &quot;stale-if-error&quot; cache-control extensions (or the configured defaults, if a response doesn't specify them).
+ * Within the stale-while-revalidate window, the stale response is served while a single request per cache key
+ * refreshes it in the background. Within the stale-if-error window, the stale response is served if the upstream
+ * request fails or answers with a server error.
+ *
+ * <p>
+ * Concurrent misses for the same cache key are coalesced: only the first request is sent upstream, the others wait
+ * for its response, including errors. If that response is successful but its cache headers forbid caching it, the
+ * waiting requests are sent upstream on their own, as responses that must not be cached must not be shared either.
+ * Requests carrying cookies or credentials, and requests whose last successful response forbade caching, are not
+ * coalesced at all.
+ *
+ * <p>
  * The cache is inserted into request processing via the {@link CachingClientDecorator}.
  */
 public class HttpCache {
@@ -46,9 +70,22 @@ public class HttpCache {
     private static final Collection<String> cachableMethods = new HashSet<>(Arrays.asList("GET", "HEAD"));
     private static final Collection<StatusType> cachableStatusTypes = new HashSet<>(
         Arrays.asList(Status.OK, Status.GONE, Status.MOVED_PERMANENTLY));
+    private static final Collection<String> personalizingHeaders = Arrays.asList("cookie", "authorization");
+    private static final int maxUncachableKeys = 10_000;
 
-    private final Cache<String, Response<ByteString>> cache;
+    /**
+     * Marks a request that must be sent upstream even if a request with the same cache key is in flight or cached, as
+     * hedged requests do. The header is removed before the request is sent.
+     */
+    public static final String noCoalescingHeader = "x-rd-no-coalescing";
+
+    private final Cache<String, CachedResponse> cache;
+    private final Map<String, CompletableFuture<Response<ByteString>>> inFlight = new ConcurrentHashMap<>();
+    private final Set<String> revalidating = ConcurrentHashMap.newKeySet();
+    private final Cache<String, Boolean> uncachableKeys = Caffeine.newBuilder().maximumSize(maxUncachableKeys).build();
+    private final LongAdder coalesced = new LongAdder();
     private final HttpCacheConfiguration configuration;
+    private final Ticker ticker;
 
     @Inject
     public HttpCache(final Provider<Environment> environmentProvider) {
@@ -59,6 +96,7 @@ public class HttpCache {
     HttpCache(final Provider<Environment> environmentProvider, final Ticker ticker) {
         this.configuration =
             HttpCacheConfiguration.fromConfig(environmentProvider.get().config().getConfig("composer.http.cache"));
+        this.ticker = ticker;
         if (!configuration.enabled()) {
             cache = null;
             return;
@@ -71,17 +109,148 @@ public class HttpCache {
             .build();
     }
 
-    public CompletionStage<Response<ByteString>> withCaching(final Request request, final Optional<Request> incoming,
+    public CompletionStage<Response<ByteString>> withCaching(final Request marked, final Optional<Request> incoming,
         final IncomingRequestAwareClient client) {
+        final boolean noCoalescing = marked.header(noCoalescingHeader).isPresent();
+        final Request request = noCoalescing ? withoutHeader(marked, noCoalescingHeader) : marked;
         if (bypassCache(request)) {
             return client.send(request, incoming);
         }
 
         final String cacheKey = cacheKey(request);
+        if (noCoalescing) {
+            return fetchFromUpstream(request, incoming, client).get().whenComplete(cacheIfAdmissible(cacheKey));
+        }
         return queryCache(cacheKey, request)
-            .map(returnCachedResponse(cacheKey))
-            .orElseGet(fetchFromUpstream(request, incoming, client))
-            .whenComplete(cacheIfAdmissible(cacheKey));
+            .map(cached -> serveCached(cacheKey, cached, request, incoming, client))
+            .orElseGet(() -> fetchFromUpstreamOnce(cacheKey, request, incoming, client));
+    }
+
+    private static Request withoutHeader(final Request request, final String name) {
+        final Map<String, String> headers = new LinkedHashMap<>();
+        for (final Map.Entry<String, String> header : request.headerEntries()) {
+            if (!header.getKey().equalsIgnoreCase(name)) {
+                headers.put(header.getKey(), header.getValue());
+            }
+        }
+        return request.clearHeaders().withHeaders(headers);
+    }
+
+    private CompletionStage<Response<ByteString>> serveCached(final String cacheKey, final CachedResponse cached,
+        final Request request, final Optional<Request> incoming, final IncomingRequestAwareClient client) {
+        final long age = ticker.read() - cached.storedAt;
+        if (age < cached.maxAge) {
+            return returnCachedResponse(cacheKey).apply(cached.response);
+        }
+
+        if (age < cached.maxAge + cached.staleWhileRevalidate) {
+            LOGGER.debug("Serving stale response for cache key {} while revalidating", cacheKey);
+            revalidate(cacheKey, request, incoming, client);
+            return CompletableFuture.completedFuture(cached.response);
+        }
+
+        if (age < cached.maxAge + cached.staleIfError) {
+            return fetchFromUpstreamOnce(cacheKey, request, incoming, client)
+                .handle((response, ex) -> {
+                    if (ex == null && !isServerError(response)) {
+                        return response;
+                    }
+                    LOGGER.debug("Serving stale response for cache key {} due to upstream error", cacheKey);
+                    return cached.response;
+                });
+        }
+
+        return fetchFromUpstreamOnce(cacheKey, request, incoming, client);
+    }
+
+    /**
+     * Refreshes a stale response in the background, unless it is already being refreshed. Running refreshes are tracked
+     * on their own, as requests that are not coalesced are not tracked as in flight.
+     */
+    private void revalidate(final String cacheKey, final Request request, final Optional<Request> incoming,
+        final IncomingRequestAwareClient client) {
+        if (!revalidating.add(cacheKey)) {
+            return;
+        }
+        try {
+            fetchFromUpstreamOnce(cacheKey, request, incoming, client)
+                .whenComplete((response, ex) -> revalidating.remove(cacheKey));
+        } catch (final RuntimeException e) {
+            revalidating.remove(cacheKey);
+            throw e;
+        }
+    }
+
+    private static boolean isServerError(final Response<ByteString> response) {
+        return response == null || response.status().family() == Family.SERVER_ERROR;
+    }
+
+    /**
+     * Number of requests that waited for a concurrent request with the same cache key instead of going upstream.
+     */
+    public long coalescedCount() {
+        return coalesced.sum();
+    }
+
+    @Inject
+    public void registerMetrics(final SemanticMetricRegistry registry) {
+        registry.register(
+            MetricId.build("composer").tagged("what", "http-cache-coalesced-requests", "unit", "request"),
+            (Gauge<Long>) this::coalescedCount);
+    }
+
+    private CompletionStage<Response<ByteString>> fetchFromUpstreamOnce(final String cacheKey, final Request request,
+        final Optional<Request> incoming, final IncomingRequestAwareClient client) {
+        if (!mayCoalesce(cacheKey, request)) {
+            return fetchFromUpstream(request, incoming, client).get().whenComplete(cacheIfAdmissible(cacheKey));
+        }
+
+        final CompletableFuture<Response<ByteString>> fetch = new CompletableFuture<>();
+        final CompletableFuture<Response<ByteString>> running = inFlight.putIfAbsent(cacheKey, fetch);
+        if (running != null) {
+            LOGGER.debug("Waiting for running request with cache key {}", cacheKey);
+            coalesced.increment();
+            return running.handle((response, ex) -> ex == null && isUncachableByHeaders(response))
+                .thenCompose(uncachable -> uncachable ? fetchFromUpstream(request, incoming, client).get() : running);
+        }
+
+        final CompletionStage<Response<ByteString>> upstream;
+        try {
+            upstream = fetchFromUpstream(request, incoming, client).get();
+        } catch (final RuntimeException e) {
+            inFlight.remove(cacheKey, fetch);
+            fetch.completeExceptionally(e);
+            throw e;
+        }
+        upstream
+            .whenComplete(cacheIfAdmissible(cacheKey))
+            .whenComplete((response, ex) -> {
+                inFlight.remove(cacheKey, fetch);
+                if (ex != null) {
+                    fetch.completeExceptionally(ex);
+                } else {
+                    fetch.complete(response);
+                }
+            });
+        return fetch;
+    }
+
+    /**
+     * Only requests that are expected to be answered with a cachable response, shared by all clients, are coalesced.
+     * Others would just wait for a response they may not use. Errors don't count, a failing backend is expected to
+     * answer with cachable responses again once it recovers.
+     */
+    private boolean mayCoalesce(final String cacheKey, final Request request) {
+        return uncachableKeys.getIfPresent(cacheKey) == null && !isPersonalized(request);
+    }
+
+    private static boolean isPersonalized(final Request request) {
+        for (final Map.Entry<String, String> header : request.headerEntries()) {
+            if (personalizingHeaders.contains(header.getKey().toLowerCase(Locale.ROOT))) {
+                return true;
+            }
+        }
+        return false;
     }
 
     private boolean bypassCache(final Request request) {
@@ -90,7 +259,7 @@ public class HttpCache {
             CacheHeaders.of(request).noCache();
     }
 
-    private Optional<Response<ByteString>> queryCache(final String cacheKey, final Request request) {
+    private Optional<CachedResponse> queryCache(final String cacheKey, final Request request) {
         LOGGER.debug("Querying cache for {}", cacheKey);
         return Optional.ofNullable(cache.getIfPresent(cacheKey));
     }
@@ -111,14 +280,32 @@ public class HttpCache {
     private BiConsumer<Response<ByteString>, Throwable> cacheIfAdmissible(final String cacheKey) {
         return (response, ex) -> {
             LOGGER.debug("Fetched response for cache key {} (response: {})", cacheKey, response);
-            final CacheControl cacheControl = CacheHeaders.of(response);
-            if (isAdmissibleForCaching(response.status(), cacheControl)) {
-                LOGGER.debug("caching response for cache key {}, max age: {}", cacheKey, cacheControl.maxAgeSeconds());
-                cache.put(cacheKey, response);
+            if (isAdmissibleForCaching(response)) {
+                LOGGER.debug("caching response for cache key {}, max age: {}", cacheKey,
+                    CacheHeaders.of(response).maxAgeSeconds());
+                cache.put(cacheKey, cachedResponse(response));
+                uncachableKeys.invalidate(cacheKey);
+            } else if (ex == null && isUncachableByHeaders(response)) {
+                uncachableKeys.put(cacheKey, Boolean.TRUE);
             }
         };
     }
 
+    /**
+     * A successful response whose cache headers forbid caching it, as for responses personalized by the backend.
+     */
+    private static boolean isUncachableByHeaders(final Response<ByteString> response) {
+        if (response == null || response.status().family() != Family.SUCCESSFUL) {
+            return false;
+        }
+        final CacheControl cacheControl = CacheHeaders.of(response);
+        return cacheControl.noCache() || cacheControl.noStore() || cacheControl.maxAgeSeconds() <= 0;
+    }
+
+    private boolean isAdmissibleForCaching(final Response<ByteString> response) {
+        return response != null && isAdmissibleForCaching(response.status(), CacheHeaders.of(response));
+    }
+
     private boolean isAdmissibleForCaching(final StatusType responseStatus, final CacheControl cacheControl) {
         return cachableStatusTypes.contains(responseStatus) &&
             !cacheControl.noCache() &&
@@ -130,31 +317,61 @@ public class HttpCache {
         return request.method() + "_" + request.uri();
     }
 
-    private static Expiry<String, Response<ByteString>> cacheHeaderBasedExpiry() {
-        return new Expiry<String, Response<ByteString>>() {
+    private CachedResponse cachedResponse(final Response<ByteString> response) {
+        final long staleWhileRevalidate = CacheHeaders.staleWhileRevalidateSeconds(response)
+            .orElse(configuration.staleWhileRevalidate());
+        final long staleIfError = CacheHeaders.staleIfErrorSeconds(response)
+            .orElse(configuration.staleIfError());
+        return new CachedResponse(response, ticker.read(),
+            TimeUnit.SECONDS.toNanos(CacheHeaders.of(response).maxAgeSeconds()),
+            TimeUnit.SECONDS.toNanos(Math.min(staleWhileRevalidate, configuration.maxStale())),
+            TimeUnit.SECONDS.toNanos(Math.min(staleIfError, configuration.maxStale())));
+    }
+
+    /**
+     * A cached response along with the time it was stored and for how long it is fresh or may be served stale, in
+     * nanoseconds.
+     */
+    private static class CachedResponse {
+        private final Response<ByteString> response;
+        private final long storedAt;
+        private final long maxAge;
+        private final long staleWhileRevalidate;
+        private final long staleIfError;
+
+        private CachedResponse(final Response<ByteString> response, final long storedAt, final long maxAge,
+            final long staleWhileRevalidate, final long staleIfError) {
+            this.response = response;
+            this.storedAt = storedAt;
+            this.maxAge = maxAge;
+            this.staleWhileRevalidate = staleWhileRevalidate;
+            this.staleIfError = staleIfError;
+        }
+
+        private long expiration() {
+            return maxAge + Math.max(staleWhileRevalidate, staleIfError);
+        }
+    }
+
+    private static Expiry<String, CachedResponse> cacheHeaderBasedExpiry() {
+        return new Expiry<String, CachedResponse>() {
 
             @Override
-            public long expireAfterCreate(final String key, final Response<ByteString> value,
-                final long currentTime) {
-                return expiration(value);
+            public long expireAfterCreate(final String key, final CachedResponse value, final long currentTime) {
+                return value.expiration();
             }
 
             @Override
-            public long expireAfterRead(final String key, final Response<ByteString> value,
-                final long currentTime, final long currentDuration) {
+            public long expireAfterRead(final String key, final CachedResponse value, final long currentTime,
+                final long currentDuration) {
                 return currentDuration;
             }
 
             @Override
-            public long expireAfterUpdate(final String key, final Response<ByteString> value,
-                final long currentTime, final long currentDuration) {
-                return expiration(value);
+            public long expireAfterUpdate(final String key, final CachedResponse value, final long currentTime,
+                final long currentDuration) {
+                return value.expiration();
             }
         };
     }
-
-    private static long expiration(final Response<ByteString> response) {
-        final CacheControl cacheControl = CacheHeaders.of(response);
-        return TimeUnit.SECONDS.toNanos(cacheControl.maxAgeSeconds());
-    }
 }
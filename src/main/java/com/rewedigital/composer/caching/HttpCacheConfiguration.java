@@ -7,10 +7,17 @@ public class HttpCacheConfiguration {
 
     private final boolean enabled;
     private final int size;
+    private final long staleWhileRevalidate;
+    private final long staleIfError;
+    private final long maxStale;
 
-    private HttpCacheConfiguration(final boolean enabled, final int size) {
+    private HttpCacheConfiguration(final boolean enabled, final int size, final long staleWhileRevalidate,
+        final long staleIfError, final long maxStale) {
         this.enabled = enabled;
         this.size = size;
+        this.staleWhileRevalidate = staleWhileRevalidate;
+        this.staleIfError = staleIfError;
+        this.maxStale = maxStale;
     }
 
     public static HttpCacheConfiguration fromConfig(final Config config) {
@@ -25,7 +32,22 @@ public class HttpCacheConfiguration {
         if (size < 0) {
             throw new ConfigException.BadValue("size", "cache size must not be negative");
         }
-        return new HttpCacheConfiguration(enabled, size);
+
+        final long staleWhileRevalidate = seconds(config, "stale-while-revalidate");
+        final long staleIfError = seconds(config, "stale-if-error");
+        final long maxStale = seconds(config, "max-stale");
+        return new HttpCacheConfiguration(enabled, size, staleWhileRevalidate, staleIfError, maxStale);
+    }
+
+    private static long seconds(final Config config, final String path) {
+        if (!config.hasPath(path)) {
+            return 0;
+        }
+        final long result = config.getLong(path);
+        if (result < 0) {
+            throw new ConfigException.BadValue(path, "must not be negative");
+        }
+        return result;
     }
 
     public boolean enabled() {
@@ -35,4 +57,25 @@ public class HttpCacheConfiguration {
     public int size() {
         return size;
     }
+
+    /**
+     * Seconds a response may be served stale while it is revalidated, if it doesn't specify it itself.
+     */
+    public long staleWhileRevalidate() {
+        return staleWhileRevalidate;
+    }
+
+    /**
+     * Seconds a response may be served stale if upstream fails, if it doesn't specify it itself.
+     */
+    public long staleIfError() {
+        return staleIfError;
+    }
+
+    /**
+     * Maximum number of seconds any response is served stale.
+     */
+    public long maxStale() {
+        return maxStale;
+    }
 }
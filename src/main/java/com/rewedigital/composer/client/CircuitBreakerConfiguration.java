@@ -0,0 +1,116 @@
+package com.rewedigital.composer.client;
+
+import java.time.Duration;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigException;
+
+public class CircuitBreakerConfiguration {
+
+    private static final CircuitBreakerConfiguration disabled =
+        new CircuitBreakerConfiguration(false, Duration.ZERO, 0, 0, Duration.ZERO, Duration.ZERO, 0);
+
+    private final boolean enabled;
+    private final Duration window;
+    private final int minimumCalls;
+    private final double failureRate;
+    private final Duration slowCall;
+    private final Duration openDuration;
+    private final int probes;
+
+    public static CircuitBreakerConfiguration disabled() {
+        return disabled;
+    }
+
+    public static CircuitBreakerConfiguration fromConfig(final Config config) {
+        if (!config.getBoolean("enabled")) {
+            return disabled;
+        }
+
+        final Duration window = positive(config, "window");
+        final int minimumCalls = config.getInt("minimum-calls");
+        if (minimumCalls < 1) {
+            throw new ConfigException.BadValue("minimum-calls", "must be positive");
+        }
+        final double failureRate = config.getDouble("failure-rate");
+        if (failureRate <= 0 || failureRate > 1) {
+            throw new ConfigException.BadValue("failure-rate", "must be greater than 0 and at most 1");
+        }
+        final Duration slowCall = config.getDuration("slow-call");
+        if (slowCall.isNegative()) {
+            throw new ConfigException.BadValue("slow-call", "must not be negative");
+        }
+        final Duration openDuration = positive(config, "open-duration");
+        final int probes = config.getInt("probes");
+        if (probes < 1) {
+            throw new ConfigException.BadValue("probes", "must be positive");
+        }
+        return new CircuitBreakerConfiguration(true, window, minimumCalls, failureRate, slowCall, openDuration,
+            probes);
+    }
+
+    private static Duration positive(final Config config, final String path) {
+        final Duration result = config.getDuration(path);
+        if (result.isNegative() || result.isZero()) {
+            throw new ConfigException.BadValue(path, "must be positive");
+        }
+        return result;
+    }
+
+    CircuitBreakerConfiguration(final boolean enabled, final Duration window, final int minimumCalls,
+        final double failureRate, final Duration slowCall, final Duration openDuration, final int probes) {
+        this.enabled = enabled;
+        this.window = window;
+        this.minimumCalls = minimumCalls;
+        this.failureRate = failureRate;
+        this.slowCall = slowCall;
+        this.openDuration = openDuration;
+        this.probes = probes;
+    }
+
+    public boolean enabled() {
+        return enabled;
+    }
+
+    /**
+     * Period of time the failure rate of a backend is computed over.
+     */
+    public Duration window() {
+        return window;
+    }
+
+    /**
+     * Minimum number of calls within the window before the circuit of a backend may open.
+     */
+    public int minimumCalls() {
+        return minimumCalls;
+    }
+
+    /**
+     * Ratio of failed to all calls within the window at which the circuit of a backend opens.
+     */
+    public double failureRate() {
+        return failureRate;
+    }
+
+    /**
+     * Duration after which a call counts as failed even if it succeeds, {@link Duration#ZERO} to ignore latencies.
+     */
+    public Duration slowCall() {
+        return slowCall;
+    }
+
+    /**
+     * Duration an open circuit rejects calls before it lets probes through.
+     */
+    public Duration openDuration() {
+        return openDuration;
+    }
+
+    /**
+     * Number of probes that must succeed to close the circuit again.
+     */
+    public int probes() {
+        return probes;
+    }
+}
@@ -0,0 +1,294 @@
+package com.rewedigital.composer.client;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Gauge;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import com.spotify.apollo.Environment;
+import com.spotify.apollo.Request;
+import com.spotify.apollo.Response;
+import com.spotify.apollo.Status;
+import com.spotify.apollo.StatusType.Family;
+import com.spotify.apollo.environment.IncomingRequestAwareClient;
+import com.spotify.metrics.core.MetricId;
+import com.spotify.metrics.core.SemanticMetricRegistry;
+import com.typesafe.config.Config;
+
+import okio.ByteString;
+
+/**
+ * One circuit breaker per backend, identified by host and port of the requested uri.
+ *
+ * <p>
+ * A circuit is closed as long as the rate of failed calls to its backend within the configured window stays below the
+ * configured failure rate. Calls fail if they complete exceptionally, answer with a server error or take longer than
+ * the configured slow call duration. Once the circuit is open, calls are rejected with
+ * {@link Status#SERVICE_UNAVAILABLE} without being sent, so fallbacks apply immediately instead of after a timeout.
+ * After the configured open duration, the circuit is half-open and lets the configured number of probes through: if
+ * all of them succeed, the circuit is closed again, if one fails, it is opened again.
+ *
+ * <p>
+ * The circuit breakers are inserted into request processing via the {@link CircuitBreakingClientDecorator}.
+ */
+public class CircuitBreakers {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CircuitBreakers.class);
+    private static final String configPath = "composer.http.circuit-breaker";
+    private static final int maxTrackedBackends = 1_000;
+
+    public enum State {
+        CLOSED, HALF_OPEN, OPEN
+    }
+
+    private final CircuitBreakerConfiguration configuration;
+    private final Ticker ticker;
+    private final Cache<String, Breaker> breakers = Caffeine.newBuilder().maximumSize(maxTrackedBackends).build();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder opened = new LongAdder();
+    private final Set<String> registeredBackends = ConcurrentHashMap.newKeySet();
+    private volatile SemanticMetricRegistry metrics;
+
+    @Inject
+    public CircuitBreakers(final Provider<Environment> environmentProvider) {
+        this(configuration(environmentProvider.get().config()), Ticker.systemTicker());
+    }
+
+    @VisibleForTesting
+    CircuitBreakers(final CircuitBreakerConfiguration configuration, final Ticker ticker) {
+        this.configuration = configuration;
+        this.ticker = ticker;
+    }
+
+    private static CircuitBreakerConfiguration configuration(final Config config) {
+        if (!config.hasPath(configPath)) {
+            return CircuitBreakerConfiguration.disabled();
+        }
+        return CircuitBreakerConfiguration.fromConfig(config.getConfig(configPath));
+    }
+
+    public CompletionStage<Response<ByteString>> send(final Request request, final Optional<Request> incoming,
+        final IncomingRequestAwareClient client) {
+        final Optional<String> backend = backendOf(request);
+        if (!configuration.enabled() || !backend.isPresent()) {
+            return client.send(request, incoming);
+        }
+
+        final Breaker breaker = breakers.get(backend.get(), this::newBreaker);
+        final long permit = breaker.tryAcquire();
+        if (permit < 0) {
+            LOGGER.debug("circuit for {} is open, rejecting {}", backend.get(), request);
+            rejected.increment();
+            return CompletableFuture.completedFuture(Response.of(Status.SERVICE_UNAVAILABLE, ByteString.EMPTY));
+        }
+
+        final long start = ticker.read();
+        final CompletionStage<Response<ByteString>> response;
+        try {
+            response = client.send(request, incoming);
+        } catch (final RuntimeException e) {
+            breaker.record(permit, true);
+            throw e;
+        }
+        return response.whenComplete(
+            (value, ex) -> breaker.record(permit, ex != null || isServerError(value) || isSlow(ticker.read() - start)));
+    }
+
+    /**
+     * The state of the circuit of the given backend, empty if no calls to it were tracked.
+     */
+    public Optional<State> state(final String backend) {
+        return Optional.ofNullable(breakers.getIfPresent(backend)).map(Breaker::state);
+    }
+
+    /**
+     * The states of the circuits of all tracked backends.
+     */
+    public Map<String, State> states() {
+        final Map<String, State> result = new TreeMap<>();
+        breakers.asMap().forEach((backend, breaker) -> result.put(backend, breaker.state()));
+        return result;
+    }
+
+    /**
+     * Number of calls rejected by open circuits.
+     */
+    public long rejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * Number of times a circuit was opened.
+     */
+    public long openedCount() {
+        return opened.sum();
+    }
+
+    /**
+     * Registers the number of rejected calls and opened circuits, and the state of the circuit of every backend (0
+     * closed, 1 half-open, 2 open, -1 no longer tracked).
+     */
+    @Inject
+    public void registerMetrics(final SemanticMetricRegistry registry) {
+        if (!configuration.enabled()) {
+            return;
+        }
+        registry.register(metricId("circuit-breaker-rejected-calls").tagged("unit", "request"),
+            (Gauge<Long>) this::rejectedCount);
+        registry.register(metricId("circuit-breaker-opened-circuits").tagged("unit", "circuit"),
+            (Gauge<Long>) this::openedCount);
+        this.metrics = registry;
+        breakers.asMap().keySet().forEach(this::register);
+    }
+
+    private Breaker newBreaker(final String backend) {
+        register(backend);
+        return new Breaker(backend);
+    }
+
+    private void register(final String backend) {
+        final SemanticMetricRegistry registry = metrics;
+        if (registry != null && registeredBackends.add(backend)) {
+            registry.register(metricId("circuit-breaker-state").tagged("backend", backend),
+                (Gauge<Integer>) () -> state(backend).map(State::ordinal).orElse(-1));
+        }
+    }
+
+    private static MetricId metricId(final String what) {
+        return MetricId.build("composer").tagged("what", what);
+    }
+
+    private static Optional<String> backendOf(final Request request) {
+        try {
+            return Optional.ofNullable(new URI(request.uri()).getAuthority());
+        } catch (final URISyntaxException e) {
+            return Optional.empty();
+        }
+    }
+
+    private static boolean isServerError(final Response<ByteString> response) {
+        return response == null || response.status().family() == Family.SERVER_ERROR;
+    }
+
+    private boolean isSlow(final long latencyNanos) {
+        return !configuration.slowCall().isZero() && latencyNanos >= configuration.slowCall().toNanos();
+    }
+
+    /**
+     * The circuit of a single backend. Each state change starts a new generation, calls permitted in an earlier
+     * generation are not recorded anymore.
+     */
+    private class Breaker {
+        private static final int buckets = 10;
+
+        private final String backend;
+        private final long bucketNanos = Math.max(1, configuration.window().toNanos() / buckets);
+        private final long[] epochs = new long[buckets];
+        private final int[] calls = new int[buckets];
+        private final int[] failures = new int[buckets];
+        private State state = State.CLOSED;
+        private long generation = 0;
+        private long openedAt = 0;
+        private int probesStarted = 0;
+        private int probesSucceeded = 0;
+
+        private Breaker(final String backend) {
+            this.backend = backend;
+        }
+
+        private synchronized State state() {
+            return state;
+        }
+
+        private synchronized long tryAcquire() {
+            if (state == State.OPEN) {
+                if (ticker.read() - openedAt < configuration.openDuration().toNanos()) {
+                    return -1;
+                }
+                transitionTo(State.HALF_OPEN);
+            }
+            if (state == State.HALF_OPEN) {
+                if (probesStarted >= configuration.probes()) {
+                    return -1;
+                }
+                probesStarted++;
+            }
+            return generation;
+        }
+
+        private synchronized void record(final long permit, final boolean failed) {
+            if (permit != generation) {
+                return;
+            }
+            if (state == State.HALF_OPEN) {
+                if (failed) {
+                    transitionTo(State.OPEN);
+                } else if (++probesSucceeded >= configuration.probes()) {
+                    transitionTo(State.CLOSED);
+                }
+                return;
+            }
+
+            final long epoch = Math.floorDiv(ticker.read(), bucketNanos);
+            final int bucket = (int) Math.floorMod(epoch, (long) buckets);
+            if (epochs[bucket] != epoch) {
+                epochs[bucket] = epoch;
+                calls[bucket] = 0;
+                failures[bucket] = 0;
+            }
+            calls[bucket]++;
+            if (failed) {
+                failures[bucket]++;
+            }
+
+            int totalCalls = 0;
+            int totalFailures = 0;
+            for (int i = 0; i < buckets; i++) {
+                if (epoch - epochs[i] < buckets) {
+                    totalCalls += calls[i];
+                    totalFailures += failures[i];
+                }
+            }
+            if (totalCalls >= configuration.minimumCalls()
+                && totalFailures >= configuration.failureRate() * totalCalls) {
+                transitionTo(State.OPEN);
+            }
+        }
+
+        private void transitionTo(final State next) {
+            if (next == State.OPEN) {
+                LOGGER.warn("opening circuit for {}", backend);
+                opened.increment();
+                openedAt = ticker.read();
+            } else {
+                LOGGER.info("circuit for {} is {}", backend, next);
+            }
+            if (next == State.CLOSED) {
+                for (int i = 0; i < buckets; i++) {
+                    calls[i] = 0;
+                    failures[i] = 0;
+                }
+            }
+            state = next;
+            generation++;
+            probesStarted = 0;
+            probesSucceeded = 0;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.rewedigital.composer.client;
+
+import com.google.inject.Singleton;
+import com.google.inject.multibindings.Multibinder;
+import com.spotify.apollo.environment.ClientDecorator;
+import com.spotify.apollo.module.AbstractApolloModule;
+
+public class CircuitBreakingClientDecoratingModule extends AbstractApolloModule {
+
+    public static CircuitBreakingClientDecoratingModule create() {
+        return new CircuitBreakingClientDecoratingModule();
+    }
+
+    @Override
+    public String getId() {
+        return "circuit-breaker";
+    }
+
+    @Override
+    protected void configure() {
+        binder().bind(CircuitBreakers.class).in(Singleton.class);
+        Multibinder.newSetBinder(binder(), ClientDecorator.class).addBinding().to(CircuitBreakingClientDecorator.class);
+    }
+
+}
@@ -0,0 +1,27 @@
+package com.rewedigital.composer.client;
+
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import com.spotify.apollo.environment.ClientDecorator;
+import com.spotify.apollo.environment.IncomingRequestAwareClient;
+
+/**
+ * Decorator to fail fast on calls to backends whose circuit is open, see {@link CircuitBreakers}.
+ */
+public class CircuitBreakingClientDecorator implements ClientDecorator {
+
+    private final Provider<CircuitBreakers> circuitBreakers;
+
+    @Inject
+    public CircuitBreakingClientDecorator(final Provider<CircuitBreakers> circuitBreakers) {
+        this.circuitBreakers = circuitBreakers;
+    }
+
+    @Override
+    public IncomingRequestAwareClient apply(final IncomingRequestAwareClient client) {
+        return (request, incoming) -> {
+            return circuitBreakers.get().send(request, incoming, client);
+        };
+    }
+
+}
@@ -1,5 +1,7 @@
 package com.rewedigital.composer.composing;
 
+import java.util.List;
+
 /**
  * Describes a type of objects that can be composed with each other.
  * 
@@ -9,11 +11,16 @@ public interface Composable<T extends Composable<T>> {
 
     public T composedWith(final T other);
 
+    /**
+     * Composes this with all <code>others</code> at once, in their order. Implementations that copy state on every
+     * composition should override this to copy only once.
+     */
     @SuppressWarnings("unchecked")
-    default T composedFrom(final Composables composables) {
-        return composables
-                .get(this.getClass())
-                .map(r -> this.composedWith((T) r))
-                .orElse((T) this);
+    default T composedWithAll(final List<T> others) {
+        T result = (T) this;
+        for (final T other : others) {
+            result = result.composedWith(other);
+        }
+        return result;
     }
 }
\ No newline at end of file
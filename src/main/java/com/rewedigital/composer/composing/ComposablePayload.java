@@ -0,0 +1,69 @@
+package com.rewedigital.composer.composing;
+
+import java.util.Objects;
+
+import okio.ByteString;
+
+/**
+ * Payload of a template or content fragment taking part in a composition. The markup is kept as the UTF-8 encoded
+ * bytes received from upstream, it is only decoded where it needs to be parsed.
+ */
+public final class ComposablePayload {
+
+    private static final ComposablePayload empty = new ComposablePayload(ByteString.EMPTY);
+
+    private final ByteString bytes;
+
+    public static ComposablePayload of(final ByteString bytes) {
+        return new ComposablePayload(bytes);
+    }
+
+    public static ComposablePayload ofUtf8(final String markup) {
+        return new ComposablePayload(ByteString.encodeUtf8(markup));
+    }
+
+    public static ComposablePayload empty() {
+        return empty;
+    }
+
+    private ComposablePayload(final ByteString bytes) {
+        this.bytes = Objects.requireNonNull(bytes);
+    }
+
+    public ByteString bytes() {
+        return bytes;
+    }
+
+    public int size() {
+        return bytes.size();
+    }
+
+    public String utf8() {
+        return bytes.utf8();
+    }
+
+    @Override
+    public int hashCode() {
+        return bytes.hashCode();
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null) {
+            return false;
+        }
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+        final ComposablePayload other = (ComposablePayload) obj;
+        return bytes.equals(other.bytes);
+    }
+
+    @Override
+    public String toString() {
+        return "ComposablePayload [size=" + bytes.size() + "]";
+    }
+}
@@ -16,13 +16,6 @@ public interface ComposableRoot<T extends Composable<T>> {
 
     public Class<T> composableType();
 
-    default public ComposableRoot<T> composedFrom(final Composables composables) {
-        return composables
-                .get(composableType())
-                .map(r -> this.composedWith(r))
-                .orElse(this);
-    }
-
     public <P> Response<P> writtenTo(final Response<P> response);
 
 }
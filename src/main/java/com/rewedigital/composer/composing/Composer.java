@@ -1,39 +1,68 @@
 package com.rewedigital.composer.composing;
 
 import static java.util.concurrent.CompletableFuture.completedFuture;
+import static java.util.stream.Collectors.toList;
 
 import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.stream.Stream;
 
 public class Composer implements IncludedFragment.Composer, TemplateComposer {
 
     private final ContentFetcher contentFetcher;
-    private final ComposingResponse<String> composingResponse;
+    private final ComposingResponse<ComposablePayload> composingResponse;
     private final String path;
+    private final Deadline deadline;
+    private final Trace trace;
 
-    public Composer(final ContentFetcher contentFetcher, final ComposingResponse<String> composingResponse,
+    public Composer(final ContentFetcher contentFetcher, final ComposingResponse<ComposablePayload> composingResponse,
             final String path) {
+        this(contentFetcher, composingResponse, path, Deadline.none());
+    }
+
+    public Composer(final ContentFetcher contentFetcher, final ComposingResponse<ComposablePayload> composingResponse,
+            final String path, final Deadline deadline) {
+        this(contentFetcher, composingResponse, path, deadline, Trace.disabled());
+    }
+
+    public Composer(final ContentFetcher contentFetcher, final ComposingResponse<ComposablePayload> composingResponse,
+            final String path, final Deadline deadline, final Trace trace) {
         this.contentFetcher = contentFetcher;
         this.composingResponse = composingResponse;
         this.path = path;
+        this.deadline = deadline;
+        this.trace = trace;
     }
 
     @Override
-    public CompletableFuture<ComposingResponse<String>> composeTemplate() {
-        return compose(composingResponse, CompositionStep.root(path))
+    public CompletableFuture<ComposingResponse<ComposablePayload>> composeTemplate() {
+        return compose(composingResponse, CompositionStep.root(path, deadline, trace))
                 .thenApply(fragment -> composingResponse.composedWith(fragment));
     }
 
     @Override
-    public CompletableFuture<ResponseCompositionFragment> compose(final ComposingResponse<String> response,
+    public CompletableFuture<ResponseCompositionFragment> compose(final ComposingResponse<ComposablePayload> response,
             final CompositionStep step) {
+        step.record(Trace.Event.PARSE_START);
         final ResponseCompositionFragment fragment = response.fragmentFor(step);
-        return includesIn(fragment)
+        step.record(Trace.Event.PARSE_END);
+        final List<CompletableFuture<ResponseCompositionFragment>> children = includesIn(fragment)
                 .map(include -> include.fetch(contentFetcher, step)
                         .thenCompose(content -> content.compose(this, response)))
-                .reduce(completedFuture(fragment), (a, b) -> a
-                        .thenCombine(b, (x, y) -> x.composedWith(y)));
+                .collect(toList());
+        if (children.isEmpty()) {
+            return completedFuture(fragment);
+        }
+
+        return CompletableFuture.allOf(children.toArray(new CompletableFuture<?>[children.size()]))
+                .thenApply(done -> {
+                    step.record(Trace.Event.COMPOSE_START);
+                    final ResponseCompositionFragment composed = fragment.composedWithAll(
+                            children.stream().map(CompletableFuture::join).collect(toList()));
+                    step.record(Trace.Event.COMPOSE_END);
+                    return composed;
+                });
     }
 
     private Stream<? extends IncludedFragment> includesIn(final ResponseCompositionFragment compositionFragment) {
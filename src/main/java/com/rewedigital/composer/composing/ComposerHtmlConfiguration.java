@@ -9,6 +9,10 @@ public class ComposerHtmlConfiguration {
     private final String contentTag;
     private final String assetOptionsAttribute;
     private final int maxRecursion;
+    private final boolean parseCacheEnabled;
+    private final long parseCacheMaxBytes;
+    private final int maxConcurrentFetches;
+    private final int maxConcurrentFetchesPerPage;
 
     public static ComposerHtmlConfiguration fromConfig(final Config config) {
         final int maxRecursion = config.getInt("max-recursion");
@@ -16,16 +20,43 @@ public class ComposerHtmlConfiguration {
             throw new ConfigException.BadValue("max-recursion", "must be positive");
         }
 
+        final boolean parseCacheEnabled = config.getBoolean("parse-cache.enabled");
+        final long parseCacheMaxBytes = parseCacheEnabled ? config.getBytes("parse-cache.max-bytes") : 0;
+        if (parseCacheMaxBytes < 0) {
+            throw new ConfigException.BadValue("parse-cache.max-bytes", "cache size must not be negative");
+        }
+
+        final int maxConcurrentFetches = config.getInt("fetch.max-concurrent");
+        if (maxConcurrentFetches <= 0) {
+            throw new ConfigException.BadValue("fetch.max-concurrent", "must be positive");
+        }
+        final int maxConcurrentFetchesPerPage = config.getInt("fetch.max-concurrent-per-page");
+        if (maxConcurrentFetchesPerPage <= 0) {
+            throw new ConfigException.BadValue("fetch.max-concurrent-per-page", "must be positive");
+        }
+
         return new ComposerHtmlConfiguration(config.getString("include-tag"), config.getString("content-tag"),
-            config.getString("asset-options-attribute"), maxRecursion);
+            config.getString("asset-options-attribute"), maxRecursion, parseCacheEnabled, parseCacheMaxBytes,
+            maxConcurrentFetches, maxConcurrentFetchesPerPage);
     }
 
     ComposerHtmlConfiguration(final String includeTag, final String contentTag, final String assetOptionsAttribute,
         final int maxRecursion) {
+        this(includeTag, contentTag, assetOptionsAttribute, maxRecursion, false, 0, Integer.MAX_VALUE,
+            Integer.MAX_VALUE);
+    }
+
+    ComposerHtmlConfiguration(final String includeTag, final String contentTag, final String assetOptionsAttribute,
+        final int maxRecursion, final boolean parseCacheEnabled, final long parseCacheMaxBytes,
+        final int maxConcurrentFetches, final int maxConcurrentFetchesPerPage) {
         this.includeTag = includeTag;
         this.contentTag = contentTag;
         this.assetOptionsAttribute = assetOptionsAttribute;
         this.maxRecursion = maxRecursion;
+        this.parseCacheEnabled = parseCacheEnabled;
+        this.parseCacheMaxBytes = parseCacheMaxBytes;
+        this.maxConcurrentFetches = maxConcurrentFetches;
+        this.maxConcurrentFetchesPerPage = maxConcurrentFetchesPerPage;
     }
 
     public String includeTag() {
@@ -43,4 +74,29 @@ public class ComposerHtmlConfiguration {
     public int maxRecursion() {
         return maxRecursion;
     }
+
+    public boolean parseCacheEnabled() {
+        return parseCacheEnabled;
+    }
+
+    /**
+     * Maximum total size of the markup of all cached parse results.
+     */
+    public long parseCacheMaxBytes() {
+        return parseCacheMaxBytes;
+    }
+
+    /**
+     * Maximum number of concurrent fragment fetches of all pages composed by this process.
+     */
+    public int maxConcurrentFetches() {
+        return maxConcurrentFetches;
+    }
+
+    /**
+     * Maximum number of concurrent fragment fetches of a single composed page.
+     */
+    public int maxConcurrentFetchesPerPage() {
+        return maxConcurrentFetchesPerPage;
+    }
 }
@@ -56,12 +56,12 @@ public class ComposingResponse<T> {
         return composition;
     }
 
-    public Optional<ComposingResponse<String>> toComposablePayload() {
+    public Optional<ComposingResponse<ComposablePayload>> toComposablePayload() {
         return response.payload()
                 .filter(__ -> response.status().code() == Status.OK.code())
                 .filter(ByteString.class::isInstance)
                 .map(ByteString.class::cast)
-                .map(ByteString::utf8)
+                .map(ComposablePayload::of)
                 .map(response::withPayload)
                 .map(r -> new ComposingResponse<>(r, composition));
     }
@@ -6,6 +6,9 @@ import java.util.Objects;
  * Describes a step in the composition process. The composition is done
  * recursively, and steps are created root to leaf. It is used to trace the
  * progress of the recursive composition. .
+ *
+ * Every step of a composition carries the {@link Deadline} of the composed page
+ * and records its timings in the {@link Trace} of the page.
  */
 public class CompositionStep {
 
@@ -23,20 +26,36 @@ public class CompositionStep {
     private final String path;
     private final int depth;
     private final Position position;
+    private final Deadline deadline;
+    private final Trace trace;
+    private final int slot;
 
     public static CompositionStep empty() {
         return root(null);
     }
 
     public static CompositionStep root(final String path) {
-        return new CompositionStep(null, path, new Position(-1, -1), 0);
+        return root(path, Deadline.none());
     }
 
-    private CompositionStep(final CompositionStep parent, final String path, final Position position, final int depth) {
+    public static CompositionStep root(final String path, final Deadline deadline) {
+        return root(path, deadline, Trace.disabled());
+    }
+
+    public static CompositionStep root(final String path, final Deadline deadline, final Trace trace) {
+        return new CompositionStep(null, path, new Position(-1, -1), 0, Objects.requireNonNull(deadline),
+            Objects.requireNonNull(trace));
+    }
+
+    private CompositionStep(final CompositionStep parent, final String path, final Position position, final int depth,
+        final Deadline deadline, final Trace trace) {
         this.parent = parent;
         this.path = path;
         this.position = position;
         this.depth = depth;
+        this.deadline = deadline;
+        this.trace = trace;
+        this.slot = trace.register(this);
     }
 
     public int depth() {
@@ -51,6 +70,21 @@ public class CompositionStep {
         return this.position.end;
     }
 
+    public Deadline deadline() {
+        return deadline;
+    }
+
+    /**
+     * Records the <code>event</code> for this step in the trace of the page.
+     */
+    public void record(final Trace.Event event) {
+        trace.record(slot, event);
+    }
+
+    public boolean recorded(final Trace.Event event) {
+        return trace.recorded(slot, event);
+    }
+
     public boolean isRoot() {
         return this.parent == null;
     }
@@ -60,7 +94,7 @@ public class CompositionStep {
     }
 
     public CompositionStep childWith(final String path, final int startOffset, final int endOffset) {
-        return new CompositionStep(this, path, new Position(startOffset, endOffset), depth + 1);
+        return new CompositionStep(this, path, new Position(startOffset, endOffset), depth + 1, deadline, trace);
     }
 
     public String callStack() {
@@ -3,16 +3,17 @@ package com.rewedigital.composer.composing;
 import java.time.Duration;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 
 import com.spotify.apollo.Response;
 
 /**
  * Fetches content for some include using a provided fallback in case of an
- * error.
+ * error. The fallback is only materialized if it is used.
  */
 public interface ContentFetcher {
 
-    CompletableFuture<Response<String>> fetch(final String path, final String fallback,
+    CompletableFuture<Response<ComposablePayload>> fetch(final String path, final Supplier<ComposablePayload> fallback,
             final Optional<Duration> ttl, final CompositionStep step);
 
 }
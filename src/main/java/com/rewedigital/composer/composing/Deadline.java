@@ -0,0 +1,64 @@
+package com.rewedigital.composer.composing;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * The point in time a composed page has to be completed by. It is started when the route is executed and carried by
+ * every {@link CompositionStep} of the page, so each include is fetched with the budget that is left.
+ */
+public class Deadline {
+
+    private static final Deadline none = new Deadline(Optional.empty());
+    private static final Duration minTtl = Duration.ofMillis(1);
+
+    private final Optional<Long> expiresAtNanos;
+
+    public static Deadline none() {
+        return none;
+    }
+
+    public static Deadline after(final Duration budget) {
+        return new Deadline(Optional.of(System.nanoTime() + budget.toNanos()));
+    }
+
+    public static Deadline after(final Optional<Duration> budget) {
+        return budget.map(Deadline::after).orElse(none);
+    }
+
+    private Deadline(final Optional<Long> expiresAtNanos) {
+        this.expiresAtNanos = Objects.requireNonNull(expiresAtNanos);
+    }
+
+    /**
+     * The budget left, empty if the page has no budget.
+     */
+    public Optional<Duration> remaining() {
+        return expiresAtNanos.map(e -> Duration.ofNanos(Math.max(0, e - System.nanoTime())));
+    }
+
+    /**
+     * A deadline with less than a millisecond left is expired, as request timeouts have millisecond precision and a
+     * timeout of zero means no timeout at all.
+     */
+    public boolean isExpired() {
+        return remaining().map(r -> r.toMillis() <= 0).orElse(false);
+    }
+
+    /**
+     * Limits the given <code>ttl</code> of a request to the budget left, but not below a millisecond.
+     */
+    public Optional<Duration> limit(final Optional<Duration> ttl) {
+        final Optional<Duration> remaining = remaining().map(r -> r.compareTo(minTtl) < 0 ? minTtl : r);
+        if (!remaining.isPresent()) {
+            return ttl;
+        }
+        return Optional.of(ttl.filter(t -> t.compareTo(remaining.get()) < 0).orElse(remaining.get()));
+    }
+
+    @Override
+    public String toString() {
+        return remaining().map(r -> r.toMillis() + "ms left").orElse("none");
+    }
+}
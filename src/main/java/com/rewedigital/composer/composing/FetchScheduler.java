@@ -0,0 +1,186 @@
+package com.rewedigital.composer.composing;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Limits the number of concurrent fragment fetches, process-wide and per composed {@link Page}. Fetches exceeding a
+ * limit are queued and started as soon as a running fetch completes.
+ *
+ * <p>
+ * Queued fetches of a page are started by depth first and in document order within the same depth, so content at the
+ * top of a page is fetched first. Pages waiting for the process-wide limit take turns.
+ *
+ * <p>
+ * Queued fetches are started by a single thread at a time in a loop: if starting a fetch completes it (or another
+ * fetch) right away, the freed slot is picked up by the next iteration instead of a nested call, so many synchronously
+ * completing fetches don't grow the stack.
+ */
+public class FetchScheduler {
+
+    private static final Comparator<Fetch<?>> priority = Comparator
+        .<Fetch<?>>comparingInt(f -> f.step.depth())
+        .thenComparingInt(f -> f.step.startOffset())
+        .thenComparingLong(f -> f.sequence);
+
+    private final int maxConcurrentFetches;
+    private final Deque<Page> waitingPages = new ArrayDeque<>();
+    private final AtomicInteger drainRequests = new AtomicInteger();
+    private int running = 0;
+
+    public static FetchScheduler create(final int maxConcurrentFetches) {
+        return new FetchScheduler(maxConcurrentFetches);
+    }
+
+    public static FetchScheduler unlimited() {
+        return new FetchScheduler(Integer.MAX_VALUE);
+    }
+
+    private FetchScheduler(final int maxConcurrentFetches) {
+        if (maxConcurrentFetches <= 0) {
+            throw new IllegalArgumentException("maxConcurrentFetches must be positive");
+        }
+        this.maxConcurrentFetches = maxConcurrentFetches;
+    }
+
+    /**
+     * Creates the fetch queue of a newly composed page.
+     */
+    public Page page(final int maxConcurrentFetches) {
+        return new Page(maxConcurrentFetches);
+    }
+
+    /**
+     * The fetches of a single composed page.
+     */
+    public class Page {
+
+        private final int maxConcurrentFetches;
+        private final PriorityQueue<Fetch<?>> queued = new PriorityQueue<>(priority);
+        private int running = 0;
+        private long sequence = 0;
+        private boolean waiting = false;
+
+        private Page(final int maxConcurrentFetches) {
+            if (maxConcurrentFetches <= 0) {
+                throw new IllegalArgumentException("maxConcurrentFetches must be positive");
+            }
+            this.maxConcurrentFetches = maxConcurrentFetches;
+        }
+
+        /**
+         * Runs <code>fetch</code> for the include of the given step as soon as the limits allow.
+         */
+        public <T> CompletableFuture<T> schedule(final CompositionStep step,
+            final Supplier<? extends CompletionStage<T>> fetch) {
+            final Fetch<T> result;
+            synchronized (FetchScheduler.this) {
+                result = new Fetch<>(this, Objects.requireNonNull(step), sequence++, Objects.requireNonNull(fetch));
+                queued.add(result);
+                markWaiting(this);
+            }
+            startQueued();
+            return result.result;
+        }
+
+        private boolean canStart() {
+            return running < maxConcurrentFetches && !queued.isEmpty();
+        }
+    }
+
+    private static class Fetch<T> {
+        private final Page page;
+        private final CompositionStep step;
+        private final long sequence;
+        private final Supplier<? extends CompletionStage<T>> fetch;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+
+        private Fetch(final Page page, final CompositionStep step, final long sequence,
+            final Supplier<? extends CompletionStage<T>> fetch) {
+            this.page = page;
+            this.step = step;
+            this.sequence = sequence;
+            this.fetch = fetch;
+        }
+    }
+
+    private void startQueued() {
+        if (drainRequests.getAndIncrement() != 0) {
+            // the thread already draining the queue starts fetches that became startable meanwhile
+            return;
+        }
+        int requests = 1;
+        do {
+            for (final Fetch<?> fetch : startable()) {
+                start(fetch);
+            }
+            requests = drainRequests.addAndGet(-requests);
+        } while (requests != 0);
+    }
+
+    private synchronized List<Fetch<?>> startable() {
+        final List<Fetch<?>> result = new ArrayList<>();
+        while (running < maxConcurrentFetches && !waitingPages.isEmpty()) {
+            final Page page = waitingPages.pollFirst();
+            page.waiting = false;
+            if (!page.canStart()) {
+                continue;
+            }
+            running++;
+            page.running++;
+            result.add(page.queued.poll());
+            markWaiting(page);
+        }
+        return result;
+    }
+
+    private <T> void start(final Fetch<T> fetch) {
+        if (fetch.result.isDone()) {
+            // cancelled while queued, e.g. a hedged request whose original request answered meanwhile
+            completed(fetch.page);
+            return;
+        }
+        final CompletionStage<T> response;
+        try {
+            response = fetch.fetch.get();
+        } catch (final RuntimeException e) {
+            completed(fetch.page);
+            fetch.result.completeExceptionally(e);
+            return;
+        }
+        response.whenComplete((value, exception) -> {
+            // release the slot before the response is composed, which may schedule nested fetches
+            completed(fetch.page);
+            if (exception != null) {
+                fetch.result.completeExceptionally(exception);
+            } else {
+                fetch.result.complete(value);
+            }
+        });
+    }
+
+    private void completed(final Page page) {
+        synchronized (this) {
+            running--;
+            page.running--;
+            markWaiting(page);
+        }
+        startQueued();
+    }
+
+    private void markWaiting(final Page page) {
+        if (!page.waiting && page.canStart()) {
+            page.waiting = true;
+            waitingPages.addLast(page);
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package com.rewedigital.composer.composing;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Gauge;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.spotify.metrics.core.MetricId;
+import com.spotify.metrics.core.SemanticMetricRegistry;
+
+/**
+ * Hedges fragment requests: if a request has not answered after a delay, the same request is sent a second time and
+ * whichever answers first is used, the other one is cancelled. The delay is the configured percentile of the latencies
+ * observed for the include, or the configured delay as long as too few latencies were observed.
+ *
+ * <p>
+ * To protect the fragment services, each request earns a share of a hedged request according to the configured
+ * maximum ratio and a request is only hedged if a whole one is available.
+ */
+public class Hedging {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(Hedging.class);
+
+    private static final int maxTrackedIncludes = 1_000;
+    private static final double maxBurst = 10;
+
+    private static final Hedging disabled = new Hedging(null, HedgingConfiguration.disabled());
+
+    private final ScheduledExecutorService scheduler;
+    private final HedgingConfiguration configuration;
+    private final Cache<String, Latencies> latencies = Caffeine.newBuilder().maximumSize(maxTrackedIncludes).build();
+    private final LongAdder hedged = new LongAdder();
+    private double available = 0;
+
+    public static Hedging disabled() {
+        return disabled;
+    }
+
+    public static Hedging create(final HedgingConfiguration configuration) {
+        if (!configuration.enabled()) {
+            return disabled;
+        }
+        return new Hedging(Executors.newSingleThreadScheduledExecutor(r -> {
+            final Thread thread = new Thread(r, "composer-hedging");
+            thread.setDaemon(true);
+            return thread;
+        }), configuration);
+    }
+
+    private Hedging(final ScheduledExecutorService scheduler, final HedgingConfiguration configuration) {
+        this.scheduler = scheduler;
+        this.configuration = Objects.requireNonNull(configuration);
+    }
+
+    /**
+     * Sends the <code>request</code> for the include with the given path, hedging it with the same request if it takes
+     * too long and <code>mayHedge</code> still allows it.
+     */
+    public <T> CompletableFuture<T> send(final String path, final Supplier<? extends CompletionStage<T>> request,
+        final BooleanSupplier mayHedge) {
+        return send(path, request, request, mayHedge);
+    }
+
+    /**
+     * Sends the <code>request</code> for the include with the given path, sending <code>hedge</code> as well if it
+     * takes too long and <code>mayHedge</code> still allows it.
+     */
+    public <T> CompletableFuture<T> send(final String path, final Supplier<? extends CompletionStage<T>> request,
+        final Supplier<? extends CompletionStage<T>> hedge, final BooleanSupplier mayHedge) {
+        if (!configuration.enabled()) {
+            return request.get().toCompletableFuture();
+        }
+
+        final Attempts<T> attempts = new Attempts<>(path);
+        attempts.start(request);
+        earn();
+        if (!attempts.result.isDone()) {
+            final ScheduledFuture<?> delayed = scheduler.schedule(() -> hedge(attempts, hedge, mayHedge),
+                delayNanos(path), TimeUnit.NANOSECONDS);
+            attempts.result.whenComplete((value, ex) -> delayed.cancel(false));
+        }
+        return attempts.result;
+    }
+
+    /**
+     * Number of requests that were hedged.
+     */
+    public long hedgedCount() {
+        return hedged.sum();
+    }
+
+    public void registerMetrics(final SemanticMetricRegistry registry) {
+        if (configuration.enabled()) {
+            registry.register(MetricId.build("composer").tagged("what", "hedged-requests", "unit", "request"),
+                (Gauge<Long>) this::hedgedCount);
+        }
+    }
+
+    private <T> void hedge(final Attempts<T> attempts, final Supplier<? extends CompletionStage<T>> request,
+        final BooleanSupplier mayHedge) {
+        if (attempts.result.isDone() || !mayHedge.getAsBoolean() || !spend()) {
+            return;
+        }
+        LOGGER.debug("Hedging request for include {}", attempts.path);
+        hedged.increment();
+        attempts.start(request);
+    }
+
+    private long delayNanos(final String path) {
+        final Latencies observed = latencies.getIfPresent(path);
+        if (configuration.percentile() > 0 && observed != null) {
+            final long percentile = observed.percentile();
+            if (percentile >= 0) {
+                return percentile;
+            }
+        }
+        return configuration.delay().toNanos();
+    }
+
+    private synchronized void earn() {
+        available = Math.min(maxBurst, available + configuration.maxRatio());
+    }
+
+    private synchronized boolean spend() {
+        if (available < 1) {
+            return false;
+        }
+        available -= 1;
+        return true;
+    }
+
+    private void record(final String path, final long latencyNanos) {
+        if (configuration.percentile() > 0) {
+            latencies.get(path, p -> new Latencies(configuration.percentile())).record(latencyNanos);
+        }
+    }
+
+    /**
+     * The requests sent for a single fetch. The first successful answer completes the result, a failure only if no other
+     * request is pending.
+     */
+    private class Attempts<T> {
+        private final String path;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private final AtomicInteger pending = new AtomicInteger();
+
+        private Attempts(final String path) {
+            this.path = path;
+        }
+
+        private void start(final Supplier<? extends CompletionStage<T>> request) {
+            final long start = System.nanoTime();
+            pending.incrementAndGet();
+            final CompletableFuture<T> attempt;
+            try {
+                attempt = request.get().toCompletableFuture();
+            } catch (final RuntimeException e) {
+                failed(e);
+                return;
+            }
+            attempt.whenComplete((value, ex) -> {
+                if (ex != null) {
+                    failed(ex);
+                    return;
+                }
+                record(path, System.nanoTime() - start);
+                result.complete(value);
+            });
+            // cancelling is best effort, the underlying call might not be aborted
+            result.whenComplete((value, ex) -> attempt.cancel(false));
+        }
+
+        private void failed(final Throwable ex) {
+            if (pending.decrementAndGet() == 0) {
+                result.completeExceptionally(ex);
+            }
+        }
+    }
+
+    /**
+     * The most recent latencies observed for an include.
+     */
+    private static class Latencies {
+        private static final int size = 100;
+        private static final int recomputeEvery = 10;
+
+        private final int percentile;
+        private final long[] samples = new long[size];
+        private int count = 0;
+        private int next = 0;
+        private int recorded = 0;
+        private long value = -1;
+
+        private Latencies(final int percentile) {
+            this.percentile = percentile;
+        }
+
+        private synchronized void record(final long latencyNanos) {
+            samples[next] = latencyNanos;
+            next = (next + 1) % size;
+            count = Math.min(count + 1, size);
+            recorded = (recorded + 1) % recomputeEvery;
+            if (count >= size / 2 && recorded == 0) {
+                final long[] sorted = Arrays.copyOf(samples, count);
+                Arrays.sort(sorted);
+                value = sorted[sorted.length * percentile / 100];
+            }
+        }
+
+        private synchronized long percentile() {
+            return value;
+        }
+    }
+}
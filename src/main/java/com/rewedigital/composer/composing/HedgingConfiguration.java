@@ -0,0 +1,73 @@
+package com.rewedigital.composer.composing;
+
+import java.time.Duration;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigException;
+
+public class HedgingConfiguration {
+
+    private static final HedgingConfiguration disabled = new HedgingConfiguration(false, Duration.ZERO, 0, 0);
+
+    private final boolean enabled;
+    private final Duration delay;
+    private final int percentile;
+    private final double maxRatio;
+
+    public static HedgingConfiguration disabled() {
+        return disabled;
+    }
+
+    public static HedgingConfiguration fromConfig(final Config config) {
+        if (!config.getBoolean("enabled")) {
+            return disabled;
+        }
+
+        final Duration delay = config.getDuration("delay");
+        if (delay.isNegative() || delay.isZero()) {
+            throw new ConfigException.BadValue("delay", "must be positive");
+        }
+        final int percentile = config.getInt("percentile");
+        if (percentile < 0 || percentile >= 100) {
+            throw new ConfigException.BadValue("percentile", "must be between 0 and 99");
+        }
+        final double maxRatio = config.getDouble("max-ratio");
+        if (maxRatio <= 0 || maxRatio > 1) {
+            throw new ConfigException.BadValue("max-ratio", "must be greater than 0 and at most 1");
+        }
+        return new HedgingConfiguration(true, delay, percentile, maxRatio);
+    }
+
+    HedgingConfiguration(final boolean enabled, final Duration delay, final int percentile, final double maxRatio) {
+        this.enabled = enabled;
+        this.delay = delay;
+        this.percentile = percentile;
+        this.maxRatio = maxRatio;
+    }
+
+    public boolean enabled() {
+        return enabled;
+    }
+
+    /**
+     * Delay after which a request is hedged, as long as there are not enough observed latencies for its include.
+     */
+    public Duration delay() {
+        return delay;
+    }
+
+    /**
+     * Percentile of the observed latencies of an include used as delay, <code>0</code> to always use the configured
+     * delay.
+     */
+    public int percentile() {
+        return percentile;
+    }
+
+    /**
+     * Maximum ratio of hedged to all requests.
+     */
+    public double maxRatio() {
+        return maxRatio;
+    }
+}
@@ -5,13 +5,13 @@ import java.util.concurrent.CompletableFuture;
 public interface IncludedFragment {
 
     interface Composer {
-        CompletableFuture<ResponseCompositionFragment> compose(final ComposingResponse<String> response,
+        CompletableFuture<ResponseCompositionFragment> compose(final ComposingResponse<ComposablePayload> response,
                 final CompositionStep parentStep);
     }
 
     interface FragmentResponse {
         CompletableFuture<ResponseCompositionFragment> compose(final Composer composer,
-                final ComposingResponse<String> parent);
+                final ComposingResponse<ComposablePayload> parent);
     }
 
     CompletableFuture<FragmentResponse> fetch(final ContentFetcher contentFetcher, final CompositionStep step);
@@ -1,8 +1,5 @@
 package com.rewedigital.composer.composing;
 
-import static com.rewedigital.composer.util.Combiners.throwingCombiner;
-import static java.util.stream.Collectors.toList;
-
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -16,54 +13,125 @@ import com.spotify.apollo.Response;
  * {@link ComposableRoot}s that form the base of the composition. Creates
  * {@link ResponseCompositionFragment}s based on the contained roots.
  *
+ * Each root is assigned a fixed slot when the composition is created. Fragments keep their composables in the same
+ * slots, so composing them doesn't need to look up the composables by type.
+ *
  */
 public class ResponseComposition implements RequestEnricher {
 
-    private final Map<Class<ComposableRoot<?>>, ComposableRoot<?>> roots;
+    /**
+     * The types of the roots of a composition by slot, shared by the composition, all compositions derived from it and
+     * all of their fragments. The slots of the composables are indexed by their types, super classes and interfaces
+     * once, so fragments look them up without checking every composable.
+     */
+    static class Slots {
+        private final Class<?>[] rootTypes;
+        private final Map<Class<?>, Integer> composableSlots = new HashMap<>();
+
+        private Slots(final Class<?>[] rootTypes, final Class<?>[] composableTypes) {
+            this.rootTypes = rootTypes;
+            for (int i = 0; i < composableTypes.length; i++) {
+                index(composableTypes[i], i);
+            }
+        }
+
+        private void index(final Class<?> type, final int slot) {
+            if (type == null || composableSlots.putIfAbsent(type, slot) != null) {
+                return;
+            }
+            index(type.getSuperclass(), slot);
+            for (final Class<?> implemented : type.getInterfaces()) {
+                index(implemented, slot);
+            }
+        }
+
+        int composableIndexOf(final Class<?> type) {
+            return composableSlots.getOrDefault(type, -1);
+        }
+
+        private int indexOf(final Class<?> rootType) {
+            for (int i = 0; i < rootTypes.length; i++) {
+                if (rootTypes[i] == rootType) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    private final Slots slots;
+    private final ComposableRoot<?>[] roots;
 
-    private ResponseComposition(final Map<Class<ComposableRoot<?>>, ComposableRoot<?>> roots) {
+    private ResponseComposition(final Slots slots, final ComposableRoot<?>[] roots) {
+        this.slots = slots;
         this.roots = roots;
     }
 
     public static ResponseComposition of(final List<ComposableRoot<?>> roots) {
-        final Map<Class<ComposableRoot<?>>, ComposableRoot<?>> mappedRoots = new HashMap<>();
-        for (final ComposableRoot<?> root : roots) {
-            @SuppressWarnings("unchecked")
-            final Class<ComposableRoot<?>> type = (Class<ComposableRoot<?>>) root.getClass();
-            if (mappedRoots.containsKey(type)) {
-                throw new IllegalArgumentException(
-                        "each type of MergableRoot<> must only appear at most once in parameter roots!");
+        final ComposableRoot<?>[] slotted = roots.toArray(new ComposableRoot<?>[roots.size()]);
+        final Class<?>[] rootTypes = new Class<?>[slotted.length];
+        final Class<?>[] composableTypes = new Class<?>[slotted.length];
+        for (int i = 0; i < slotted.length; i++) {
+            final Class<?> type = slotted[i].getClass();
+            for (int j = 0; j < i; j++) {
+                if (rootTypes[j] == type) {
+                    throw new IllegalArgumentException(
+                            "each type of MergableRoot<> must only appear at most once in parameter roots!");
+                }
             }
-            mappedRoots.put(type, root);
+            rootTypes[i] = type;
+            composableTypes[i] = slotted[i].composableType();
         }
-        return new ResponseComposition(mappedRoots);
+        return new ResponseComposition(new Slots(rootTypes, composableTypes), slotted);
     }
 
     ResponseCompositionFragment fragmentFor(final Response<?> response, final CompositionStep step) {
-        return new ResponseCompositionFragment(
-                roots.values().stream()
-                        .map(r -> r.composableFor(response, step))
-                        .collect(toList()));
+        final Composable<?>[] composables = new Composable<?>[roots.length];
+        for (int i = 0; i < roots.length; i++) {
+            composables[i] = roots[i].composableFor(response, step);
+        }
+        return new ResponseCompositionFragment(slots, composables);
     }
 
     ResponseComposition composedWith(final ResponseCompositionFragment fragment) {
-        return ResponseComposition.of(roots.values().stream().map(r -> r.composedFrom(fragment)).collect(toList()));
+        if (fragment.slots() != slots) {
+            throw new IllegalArgumentException("fragment must belong to this composition");
+        }
+        final ComposableRoot<?>[] composed = new ComposableRoot<?>[roots.length];
+        for (int i = 0; i < roots.length; i++) {
+            composed[i] = composedWith(roots[i], fragment.slot(i));
+        }
+        return new ResponseComposition(slots, composed);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends Composable<T>> ComposableRoot<T> composedWith(final ComposableRoot<T> root,
+            final Composable<?> composable) {
+        return root.composedWith((T) composable);
     }
 
     @SuppressWarnings("unchecked")
     <Y extends ComposableRoot<?>> Optional<Y> get(final Class<Y> type) {
-        return Optional.ofNullable((Y) roots.get(type));
+        final int index = slots.indexOf(type);
+        return index < 0 ? Optional.empty() : Optional.of((Y) roots[index]);
     }
 
     @Override
     public Request enrich(final Request request) {
-        return roots.values().stream()
-                .filter(RequestEnricher.class::isInstance)
-                .reduce(request, (req, root) -> ((RequestEnricher) root).enrich(req), throwingCombiner());
+        Request result = request;
+        for (final ComposableRoot<?> root : roots) {
+            if (root instanceof RequestEnricher) {
+                result = ((RequestEnricher) root).enrich(result);
+            }
+        }
+        return result;
     }
 
     <P> Response<P> writeTo(final Response<P> response) {
-        return roots.values().stream()
-                .reduce(response, (resp, root) -> root.writtenTo(resp), throwingCombiner());
+        Response<P> result = response;
+        for (final ComposableRoot<?> root : roots) {
+            result = root.writtenTo(result);
+        }
+        return result;
     }
 }
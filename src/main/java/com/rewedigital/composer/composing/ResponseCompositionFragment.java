@@ -1,44 +1,111 @@
 package com.rewedigital.composer.composing;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 
 /**
- * Fragment of a {@link ResponseComposition}.
+ * Fragment of a {@link ResponseComposition}. Holds one {@link Composable} per root of the composition, in the slot of
+ * that root.
  *
  */
 public class ResponseCompositionFragment implements Composables {
 
-    private final List<Composable<?>> composables;
+    private final ResponseComposition.Slots slots;
+    private final Composable<?>[] composables;
 
-    ResponseCompositionFragment(final List<Composable<?>> composables) {
-        this.composables = new LinkedList<>(composables);
+    ResponseCompositionFragment(final ResponseComposition.Slots slots, final Composable<?>[] composables) {
+        this.slots = Objects.requireNonNull(slots);
+        this.composables = Objects.requireNonNull(composables);
     }
 
     @Override
     @SuppressWarnings("unchecked")
     public <Y> Optional<Y> get(final Class<Y> type) {
-        for (final Composable<?> element : composables) {
-            if (type.isInstance(element)) {
-                return (Optional<Y>) Optional.of(element);
-            }
-        }
-        return Optional.empty();
+        final int index = slots.composableIndexOf(type);
+        return index < 0 ? Optional.empty() : Optional.of((Y) composables[index]);
+    }
+
+    ResponseComposition.Slots slots() {
+        return slots;
+    }
+
+    Composable<?> slot(final int index) {
+        return composables[index];
     }
 
     public ResponseCompositionFragment composedWith(final ResponseCompositionFragment other) {
-        final List<Composable<?>> composed = new LinkedList<>();
-        for (final Composable<?> entry : composables) {
-            composed.add(entry.composedFrom(other));
+        return composedWithAll(Collections.singletonList(other));
+    }
+
+    /**
+     * Composes this fragment with all <code>others</code> at once, in their order.
+     */
+    public ResponseCompositionFragment composedWithAll(final List<ResponseCompositionFragment> others) {
+        final Builder builder = builder();
+        for (final ResponseCompositionFragment other : others) {
+            builder.add(other);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Creates a builder collecting the fragments this fragment is composed with.
+     */
+    public Builder builder() {
+        return new Builder(this);
+    }
+
+    /**
+     * Mutable, not thread-safe collector of the fragments composed into a fragment. Each slot is composed only once,
+     * when the builder is frozen by {@link #build()}.
+     */
+    public static class Builder {
+
+        private final ResponseCompositionFragment base;
+        private final List<List<Composable<?>>> added;
+        private boolean built = false;
+
+        private Builder(final ResponseCompositionFragment base) {
+            this.base = base;
+            this.added = new ArrayList<>(base.composables.length);
+            for (int i = 0; i < base.composables.length; i++) {
+                added.add(new ArrayList<>());
+            }
+        }
+
+        public Builder add(final ResponseCompositionFragment fragment) {
+            if (built) {
+                throw new IllegalStateException("fragment has already been built");
+            }
+            if (fragment.slots != base.slots) {
+                throw new IllegalArgumentException("fragment must belong to the same composition");
+            }
+            for (int i = 0; i < fragment.composables.length; i++) {
+                added.get(i).add(fragment.composables[i]);
+            }
+            return this;
         }
 
-        for (final Composable<?> entry : other.composables) {
-            if (!get(entry.getClass()).isPresent()) {
-                composed.add(entry);
+        public ResponseCompositionFragment build() {
+            built = true;
+            if (added.isEmpty() || added.get(0).isEmpty()) {
+                return base;
             }
+
+            final Composable<?>[] composed = new Composable<?>[base.composables.length];
+            for (int i = 0; i < composed.length; i++) {
+                composed[i] = composedWithAll(base.composables[i], added.get(i));
+            }
+            return new ResponseCompositionFragment(base.slots, composed);
         }
 
-        return new ResponseCompositionFragment(composed);
+        @SuppressWarnings("unchecked")
+        private static <T extends Composable<T>> T composedWithAll(final Composable<T> composable,
+                final List<Composable<?>> others) {
+            return composable.composedWithAll((List<T>) (List<?>) others);
+        }
     }
-}
\ No newline at end of file
+}
@@ -15,8 +15,8 @@ public interface TemplateComposer {
 
     interface Factory {
         TemplateComposer build(Client client, String path, Map<String, Object> parsedPathArguments,
-                ComposingResponse<String> composingResponse);
+                ComposingResponse<ComposablePayload> composingResponse, Deadline deadline, Trace trace);
     }
 
-    CompletableFuture<ComposingResponse<String>> composeTemplate();
+    CompletableFuture<ComposingResponse<ComposablePayload>> composeTemplate();
 }
@@ -0,0 +1,200 @@
+package com.rewedigital.composer.composing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Timings of the composition of a single page. Every {@link CompositionStep} of the page gets a slot in arrays that are
+ * allocated once when the trace is started, recording an {@link Event} only writes the elapsed time into the slot.
+ * Steps beyond the capacity of the trace are counted, but not traced.
+ *
+ * <p>
+ * Slots are written by the threads completing the fetches and compositions of the steps. The trace is only read once
+ * the page is composed, after all of these have completed.
+ */
+public class Trace {
+
+    public enum Event {
+        FETCH_START, FETCH_END, FETCH_SHARED, PARSE_START, PARSE_END, PARSE_CACHE_HIT, PARSE_CACHE_MISS,
+        COMPOSE_START, COMPOSE_END
+    }
+
+    private static final int events = Event.values().length;
+    private static final Trace disabled = new Trace(0);
+
+    private final long startNanos = System.nanoTime();
+    private final CompositionStep[] steps;
+    private final long[] timings;
+    private final AtomicInteger registered = new AtomicInteger();
+    private long templateFetched = 0;
+
+    public static Trace disabled() {
+        return disabled;
+    }
+
+    static Trace start(final int maxSteps) {
+        return new Trace(maxSteps);
+    }
+
+    private Trace(final int maxSteps) {
+        this.steps = new CompositionStep[maxSteps];
+        this.timings = new long[maxSteps * events];
+    }
+
+    public boolean isEnabled() {
+        return this != disabled;
+    }
+
+    /**
+     * Records that the template of the page was fetched.
+     */
+    public void templateFetched() {
+        if (isEnabled()) {
+            templateFetched = elapsed();
+        }
+    }
+
+    int register(final CompositionStep step) {
+        if (!isEnabled()) {
+            return -1;
+        }
+        final int slot = registered.getAndIncrement();
+        if (slot >= steps.length) {
+            return -1;
+        }
+        steps[slot] = step;
+        return slot;
+    }
+
+    void record(final int slot, final Event event) {
+        if (slot >= 0) {
+            timings[slot * events + event.ordinal()] = elapsed();
+        }
+    }
+
+    boolean recorded(final int slot, final Event event) {
+        return slot >= 0 && timings[slot * events + event.ordinal()] > 0;
+    }
+
+    private long elapsed() {
+        return Math.max(1, System.nanoTime() - startNanos);
+    }
+
+    private long timing(final int slot, final Event event) {
+        return timings[slot * events + event.ordinal()];
+    }
+
+    private long duration(final int slot, final Event start, final Event end) {
+        final long started = timing(slot, start);
+        final long ended = timing(slot, end);
+        return started > 0 && ended >= started ? ended - started : -1;
+    }
+
+    /**
+     * Aggregates the timings recorded so far, with the call stacks of the <code>slowest</code> fetches.
+     */
+    Summary summarize(final int slowest) {
+        final Summary result = new Summary();
+        result.total = elapsed();
+        result.template = templateFetched;
+        result.steps = registered.get();
+        result.traced = Math.min(result.steps, steps.length);
+
+        long firstFetch = Long.MAX_VALUE;
+        long lastFetch = 0;
+        final int[] slowestSlots = new int[slowest];
+        int slowestCount = 0;
+        for (int slot = 0; slot < result.traced; slot++) {
+            final long fetch = duration(slot, Event.FETCH_START, Event.FETCH_END);
+            if (fetch >= 0) {
+                result.fetched++;
+                firstFetch = Math.min(firstFetch, timing(slot, Event.FETCH_START));
+                lastFetch = Math.max(lastFetch, timing(slot, Event.FETCH_END));
+                slowestCount = insertSlowest(slowestSlots, slowestCount, slot, fetch);
+            }
+            if (recorded(slot, Event.FETCH_SHARED)) {
+                result.shared++;
+            }
+            result.parse += Math.max(0, duration(slot, Event.PARSE_START, Event.PARSE_END));
+            if (recorded(slot, Event.PARSE_CACHE_MISS)) {
+                result.parsed++;
+            } else if (recorded(slot, Event.PARSE_CACHE_HIT)) {
+                result.cached++;
+            }
+            result.compose += Math.max(0, duration(slot, Event.COMPOSE_START, Event.COMPOSE_END));
+        }
+        result.includes = result.fetched > 0 ? lastFetch - firstFetch : 0;
+
+        for (int i = 0; i < slowestCount; i++) {
+            final int slot = slowestSlots[i];
+            result.slowest.add(
+                steps[slot].callStack() + " " + millis(duration(slot, Event.FETCH_START, Event.FETCH_END)) + "ms");
+        }
+        return result;
+    }
+
+    private int insertSlowest(final int[] slowest, final int count, final int slot, final long fetch) {
+        int position = count;
+        while (position > 0
+            && duration(slowest[position - 1], Event.FETCH_START, Event.FETCH_END) < fetch) {
+            position--;
+        }
+        if (position >= slowest.length) {
+            return count;
+        }
+        final int moved = Math.min(count, slowest.length - 1) - position;
+        System.arraycopy(slowest, position, slowest, position + 1, moved);
+        slowest[position] = slot;
+        return Math.min(count + 1, slowest.length);
+    }
+
+    private static String millis(final long nanos) {
+        return String.format(Locale.ROOT, "%.1f", nanos / 1_000_000.0);
+    }
+
+    /**
+     * The aggregated timings of a page.
+     */
+    static class Summary {
+        private long total;
+        private long template;
+        private long includes;
+        private long parse;
+        private long compose;
+        private int steps;
+        private int traced;
+        private int fetched;
+        private int shared;
+        private int parsed;
+        private int cached;
+        private final List<String> slowest = new ArrayList<>();
+
+        long totalNanos() {
+            return total;
+        }
+
+        List<String> slowest() {
+            return slowest;
+        }
+
+        /**
+         * The timings as value of a <code>Server-Timing</code> header.
+         */
+        String serverTiming() {
+            return "template;dur=" + millis(template)
+                + ", includes;dur=" + millis(includes) + ";desc=\"" + fetched + " fetched, " + shared + " shared\""
+                + ", parse;dur=" + millis(parse) + ";desc=\"" + parsed + " parsed, " + cached + " cached\""
+                + ", compose;dur=" + millis(compose)
+                + ", total;dur=" + millis(total);
+        }
+
+        @Override
+        public String toString() {
+            return "total=" + millis(total) + " template=" + millis(template) + " includes=" + millis(includes)
+                + " fetched=" + fetched + " shared=" + shared + " parse=" + millis(parse) + " parsed=" + parsed
+                + " cached=" + cached + " compose=" + millis(compose) + " steps=" + steps + " traced=" + traced;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.rewedigital.composer.composing;
+
+import java.util.Objects;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.spotify.apollo.Response;
+
+/**
+ * Starts a {@link Trace} per composed page and reports it once the page is composed: pages taking at least the
+ * configured threshold are logged as a single line of <code>key=value</code> pairs, including the call stacks of the
+ * slowest fetches, and the timings are optionally added to the response as <code>Server-Timing</code> header.
+ */
+public class Tracing {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(Tracing.class);
+
+    private static final Tracing disabled = new Tracing(TracingConfiguration.disabled());
+
+    private final TracingConfiguration configuration;
+
+    public static Tracing disabled() {
+        return disabled;
+    }
+
+    public static Tracing create(final TracingConfiguration configuration) {
+        if (!configuration.enabled()) {
+            return disabled;
+        }
+        return new Tracing(configuration);
+    }
+
+    private Tracing(final TracingConfiguration configuration) {
+        this.configuration = Objects.requireNonNull(configuration);
+    }
+
+    public Trace start() {
+        if (!configuration.enabled()) {
+            return Trace.disabled();
+        }
+        return Trace.start(configuration.maxSteps());
+    }
+
+    /**
+     * Reports the <code>trace</code> of the page with the given path and returns the <code>response</code>, with a
+     * <code>Server-Timing</code> header if configured.
+     */
+    public <T> Response<T> finish(final Trace trace, final String path, final Response<T> response) {
+        if (!trace.isEnabled()) {
+            return response;
+        }
+
+        final Trace.Summary summary = trace.summarize(configuration.slowest());
+        if (summary.totalNanos() >= configuration.logThreshold().toNanos()) {
+            LOGGER.info("trace path={} status={} {} slowest={}", path, response.status().code(), summary,
+                summary.slowest());
+        }
+        if (configuration.serverTiming()) {
+            return response.withHeader("Server-Timing", summary.serverTiming());
+        }
+        return response;
+    }
+}
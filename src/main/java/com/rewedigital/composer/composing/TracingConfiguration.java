@@ -0,0 +1,83 @@
+package com.rewedigital.composer.composing;
+
+import java.time.Duration;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigException;
+
+public class TracingConfiguration {
+
+    private static final TracingConfiguration disabled = new TracingConfiguration(false, false, Duration.ZERO, 0, 0);
+
+    private final boolean enabled;
+    private final boolean serverTiming;
+    private final Duration logThreshold;
+    private final int maxSteps;
+    private final int slowest;
+
+    public static TracingConfiguration disabled() {
+        return disabled;
+    }
+
+    public static TracingConfiguration fromConfig(final Config config) {
+        if (!config.getBoolean("enabled")) {
+            return disabled;
+        }
+
+        final boolean serverTiming = config.getBoolean("server-timing");
+        final Duration logThreshold = config.getDuration("log-threshold");
+        if (logThreshold.isNegative()) {
+            throw new ConfigException.BadValue("log-threshold", "must not be negative");
+        }
+        final int maxSteps = config.getInt("max-steps");
+        if (maxSteps <= 0) {
+            throw new ConfigException.BadValue("max-steps", "must be positive");
+        }
+        final int slowest = config.getInt("slowest");
+        if (slowest < 0) {
+            throw new ConfigException.BadValue("slowest", "must not be negative");
+        }
+        return new TracingConfiguration(true, serverTiming, logThreshold, maxSteps, slowest);
+    }
+
+    TracingConfiguration(final boolean enabled, final boolean serverTiming, final Duration logThreshold,
+        final int maxSteps, final int slowest) {
+        this.enabled = enabled;
+        this.serverTiming = serverTiming;
+        this.logThreshold = logThreshold;
+        this.maxSteps = maxSteps;
+        this.slowest = slowest;
+    }
+
+    public boolean enabled() {
+        return enabled;
+    }
+
+    /**
+     * Whether the timings of a page are added to its response as <code>Server-Timing</code> header.
+     */
+    public boolean serverTiming() {
+        return serverTiming;
+    }
+
+    /**
+     * Pages taking at least this long are logged with their timings.
+     */
+    public Duration logThreshold() {
+        return logThreshold;
+    }
+
+    /**
+     * Maximum number of composition steps traced per page, further steps are only counted.
+     */
+    public int maxSteps() {
+        return maxSteps;
+    }
+
+    /**
+     * Number of slowest fetches logged with their call stack.
+     */
+    public int slowest() {
+        return slowest;
+    }
+}
@@ -4,11 +4,10 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
-import java.util.function.Predicate;
 
 /**
  * Describes a <code>link</code> or <code>script</code> tag found in an html <code>head</code> section during parsing of
- * a template or content fragment.
+ * a template or content fragment. Assets are immutable, they are rendered and hashed once when they are built.
  */
 class Asset {
     public static class Builder {
@@ -37,14 +36,6 @@ class Asset {
             return this;
         }
 
-        public boolean isInclude() {
-            return optionsContain("include");
-        }
-
-        private boolean optionsContain(final String option) {
-            return attributes.getOrDefault(optionsAttributeName, "").contains(option);
-        }
-
         public Asset build() {
             return new Asset(this);
         }
@@ -54,35 +45,38 @@ class Asset {
     private final String type;
     private final Map<String, String> attributes;
     private final boolean selfClosing;
+    private final String rendered;
+    private final int hashCode;
 
     private Asset(final Asset.Builder builder) {
         this.optionsAttributeName = builder.optionsAttributeName;
         this.type = builder.type;
         this.selfClosing = builder.selfClosing;
         this.attributes = new HashMap<>(builder.attributes);
+        this.rendered = renderOnce();
+        this.hashCode = Objects.hash(attributes, selfClosing, type);
     }
 
     public String render() {
-        return attributes
-            .entrySet()
-            .stream()
-            .filter(notOptionsAttribute())
-            .reduce(new StringBuilder().append(renderOpen()),
-                (builder, e) -> builder.append(e.getKey())
-                    .append("=\"")
-                    .append(e.getValue())
-                    .append("\" "),
-                (a, b) -> a.append(b))
-            .append(renderClosing()).toString();
+        return rendered;
     }
 
-    private Predicate<? super Entry<String, String>> notOptionsAttribute() {
-        return e -> !e.getKey().equals(optionsAttributeName);
+    private String renderOnce() {
+        final StringBuilder result = new StringBuilder(renderOpen());
+        for (final Entry<String, String> attribute : attributes.entrySet()) {
+            if (!attribute.getKey().equals(optionsAttributeName)) {
+                result.append(attribute.getKey())
+                    .append("=\"")
+                    .append(attribute.getValue())
+                    .append("\" ");
+            }
+        }
+        return result.append(renderClosing()).toString();
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(attributes, selfClosing, type);
+        return hashCode;
     }
 
     @Override
@@ -97,7 +91,8 @@ class Asset {
             return false;
         }
         final Asset other = (Asset) obj;
-        return selfClosing == other.selfClosing &&
+        return hashCode == other.hashCode &&
+            selfClosing == other.selfClosing &&
             Objects.equals(attributes, other.attributes) &&
             Objects.equals(type, other.type);
     }
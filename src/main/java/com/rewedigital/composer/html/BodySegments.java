@@ -0,0 +1,84 @@
+package com.rewedigital.composer.html;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import okio.ByteString;
+
+/**
+ * Collects the slices of templates and content fragments that make up a composed body. The slices only reference the
+ * UTF-8 encoded source markup by byte offsets, the composed body is written exactly once into a buffer sized to hold
+ * the complete result. The buffer is read by {@link ByteString#read(InputStream, int)}, which wraps it without the
+ * defensive copy {@link ByteString#of(byte...)} would make.
+ */
+class BodySegments {
+
+    private static class Segment {
+        private final ByteString source;
+        private final int start;
+        private final int end;
+
+        private Segment(final ByteString source, final int start, final int end) {
+            this.source = source;
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    private final List<Segment> segments = new ArrayList<>();
+    private int length = 0;
+
+    public BodySegments add(final ByteString source) {
+        return add(source, 0, source.size());
+    }
+
+    public BodySegments add(final ByteString source, final int start, final int end) {
+        if (end > start) {
+            segments.add(new Segment(source, start, end));
+            length += end - start;
+        }
+        return this;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public ByteString render() {
+        try {
+            return ByteString.read(new SegmentsInputStream(), length);
+        } catch (final IOException e) {
+            throw new UncheckedIOException("segments are kept in memory and cannot fail to be read", e);
+        }
+    }
+
+    private class SegmentsInputStream extends InputStream {
+        private int segment = 0;
+        private ByteBuffer current = null;
+
+        @Override
+        public int read(final byte[] target, final int offset, final int count) {
+            while (current == null || !current.hasRemaining()) {
+                if (segment >= segments.size()) {
+                    return -1;
+                }
+                final Segment next = segments.get(segment++);
+                current = next.source.asByteBuffer();
+                current.limit(next.end).position(next.start);
+            }
+            final int read = Math.min(count, current.remaining());
+            current.get(target, offset, read);
+            return read;
+        }
+
+        @Override
+        public int read() {
+            final byte[] single = new byte[1];
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+        }
+    }
+}
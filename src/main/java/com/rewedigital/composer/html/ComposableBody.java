@@ -1,26 +1,30 @@
 package com.rewedigital.composer.html;
 
-import java.io.StringWriter;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.Set;
 
 import com.rewedigital.composer.composing.Composable;
 import com.rewedigital.composer.composing.CompositionStep;
 import com.rewedigital.composer.composing.FragmentSource;
 import com.rewedigital.composer.composing.IncludedFragment;
 
+import okio.ByteString;
+
 class ComposableBody implements Composable<ComposableBody>, FragmentSource {
 
-    private static final ComposableBody empty = ComposableBody.of(CompositionStep.empty(), "",
-            ContentRange.empty(), Collections.emptyList(), Collections.emptyList());
+    private static final ComposableBody empty = ComposableBody.of(CompositionStep.empty(),
+            new ParsedTemplate(ByteString.EMPTY, ContentRange.empty(), -1, Collections.emptyList(),
+                    Collections.emptyList()));
 
     private final CompositionStep step;
-    private final List<Asset> assets;
-    private final String template;
+    private final Set<Asset> assets;
+    private final ByteString template;
     private final ContentRange contentRange;
+    private final int headEnd;
     private final List<HttpFragment> includedFragments;
     private final List<ComposableBody> children;
 
@@ -28,21 +32,20 @@ class ComposableBody implements Composable<ComposableBody>, FragmentSource {
         return empty;
     }
 
-    public static ComposableBody of(final CompositionStep step, final String template,
-            final ContentRange contentRange, final List<HttpFragment> includedFragments, final List<Asset> assets) {
-        return new ComposableBody(step, template, contentRange, includedFragments, assets,
-                Collections.emptyList());
+    public static ComposableBody of(final CompositionStep step, final ParsedTemplate parsed) {
+        return new ComposableBody(step, parsed.markup(), parsed.contentRange(), parsed.headEnd(),
+                parsed.includedFragments(), parsed.assets(), Collections.emptyList());
     }
 
-    private ComposableBody(final CompositionStep step, final String template, final ContentRange contentRange,
-            final List<HttpFragment> includedFragments, final List<Asset> assets,
+    private ComposableBody(final CompositionStep step, final ByteString template, final ContentRange contentRange,
+            final int headEnd, final List<HttpFragment> includedFragments, final Set<Asset> assets,
             final List<ComposableBody> children) {
-        this.includedFragments = includedFragments.stream().filter(f -> f.isInRage(contentRange))
-                .collect(Collectors.toList());
+        this.includedFragments = includedFragments;
         this.step = step;
         this.assets = assets;
         this.template = template;
         this.contentRange = contentRange;
+        this.headEnd = headEnd;
         this.children = children;
     }
 
@@ -50,7 +53,20 @@ class ComposableBody implements Composable<ComposableBody>, FragmentSource {
     public ComposableBody composedWith(final ComposableBody other) {
         final LinkedList<ComposableBody> children = new LinkedList<>(this.children);
         children.add(other);
-        return new ComposableBody(step, template, contentRange, includedFragments, assets, children);
+        return new ComposableBody(step, template, contentRange, headEnd, includedFragments,
+                union(assets, other.allAssets()), children);
+    }
+
+    @Override
+    public ComposableBody composedWithAll(final List<ComposableBody> others) {
+        if (others.isEmpty()) {
+            return this;
+        }
+        final List<ComposableBody> children = new ArrayList<>(this.children.size() + others.size());
+        children.addAll(this.children);
+        children.addAll(others);
+        return new ComposableBody(step, template, contentRange, headEnd, includedFragments, union(assets, others),
+                children);
     }
 
     @Override
@@ -58,20 +74,73 @@ class ComposableBody implements Composable<ComposableBody>, FragmentSource {
         return includedFragments;
     }
 
-    public String body() {
-        final StringWriter writer = new StringWriter(template.length());
+    public BodySegments writtenTo(final BodySegments segments) {
+        return writtenTo(segments, ByteString.EMPTY);
+    }
+
+    /**
+     * Writes the composed content, inserting <code>headContent</code> right before the end of the head section of this
+     * template (if part of the content). Head sections of included content are left as they are.
+     */
+    public BodySegments writtenTo(final BodySegments segments, final ByteString headContent) {
         int currentIndex = contentRange.start();
         for (final ComposableBody c : children) {
-            writer.write(template, currentIndex, c.startOffset() - currentIndex);
-            writer.write(c.body());
+            writeTemplate(segments, currentIndex, c.startOffset(), headContent);
+            c.writtenTo(segments);
             currentIndex = c.endOffset();
         }
-        writer.write(template, currentIndex, contentRange.end() - currentIndex);
-        return writer.toString();
+        return writeTemplate(segments, currentIndex, contentRange.end(), headContent);
     }
 
-    public Stream<Asset> allAssets() {
-        return Stream.concat(assets.stream(), children.stream().flatMap(c -> c.allAssets()));
+    private BodySegments writeTemplate(final BodySegments segments, final int start, final int end,
+            final ByteString headContent) {
+        if (start <= headEnd && headEnd < end) {
+            return segments.add(template, start, headEnd)
+                    .add(headContent)
+                    .add(template, headEnd, end);
+        }
+        return segments.add(template, start, end);
+    }
+
+    /**
+     * The distinct assets of this body and all composed children, in order of their occurrence. The assets are collected
+     * while composing.
+     */
+    public Set<Asset> allAssets() {
+        return assets;
+    }
+
+    static Set<Asset> union(final Set<Asset> assets, final Set<Asset> other) {
+        if (other.isEmpty() || assets.containsAll(other)) {
+            return assets;
+        }
+        if (assets.isEmpty()) {
+            return other;
+        }
+        final Set<Asset> result = new LinkedHashSet<>(assets);
+        result.addAll(other);
+        return Collections.unmodifiableSet(result);
+    }
+
+    private static Set<Asset> union(final Set<Asset> assets, final List<ComposableBody> others) {
+        Set<Asset> result = assets;
+        LinkedHashSet<Asset> copy = null;
+        for (final ComposableBody other : others) {
+            final Set<Asset> otherAssets = other.allAssets();
+            if (otherAssets.isEmpty() || result.containsAll(otherAssets)) {
+                continue;
+            }
+            if (result.isEmpty()) {
+                result = otherAssets;
+                continue;
+            }
+            if (copy == null) {
+                copy = new LinkedHashSet<>(result);
+                result = copy;
+            }
+            copy.addAll(otherAssets);
+        }
+        return copy == null ? result : Collections.unmodifiableSet(copy);
     }
 
     public boolean isEmpty() {
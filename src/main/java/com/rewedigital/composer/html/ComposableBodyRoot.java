@@ -5,26 +5,43 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.Set;
 
+import com.rewedigital.composer.composing.ComposablePayload;
 import com.rewedigital.composer.composing.ComposableRoot;
 import com.rewedigital.composer.composing.ComposerHtmlConfiguration;
 import com.rewedigital.composer.composing.CompositionStep;
+import com.rewedigital.composer.composing.Trace;
 import com.spotify.apollo.Response;
 
+import okio.ByteString;
+
 public class ComposableBodyRoot implements ComposableRoot<ComposableBody> {
 
+    private static final ByteString noAssetLinks = ByteString.encodeUtf8("\n");
+
     private final ComposerHtmlConfiguration configuration;
+    private final ParseCache parseCache;
+    private final MarkupScanner scanner;
     private final List<ComposableBody> children;
+    private final Set<Asset> assets;
 
     public static ComposableBodyRoot of(final ComposerHtmlConfiguration configuration) {
-        return new ComposableBodyRoot(configuration, Collections.emptyList());
+        return of(configuration, ParseCache.disabled());
+    }
+
+    public static ComposableBodyRoot of(final ComposerHtmlConfiguration configuration, final ParseCache parseCache) {
+        return new ComposableBodyRoot(configuration, parseCache, new MarkupScanner(configuration),
+                Collections.emptyList(), Collections.emptySet());
     }
 
-    private ComposableBodyRoot(final ComposerHtmlConfiguration configuration, final List<ComposableBody> children) {
+    private ComposableBodyRoot(final ComposerHtmlConfiguration configuration, final ParseCache parseCache,
+            final MarkupScanner scanner, final List<ComposableBody> children, final Set<Asset> assets) {
         this.configuration = Objects.requireNonNull(configuration);
+        this.parseCache = Objects.requireNonNull(parseCache);
+        this.scanner = Objects.requireNonNull(scanner);
         this.children = Objects.requireNonNull(children);
+        this.assets = Objects.requireNonNull(assets);
     }
 
     @Override
@@ -35,7 +52,8 @@ public class ComposableBodyRoot implements ComposableRoot<ComposableBody> {
 
         final List<ComposableBody> children = new LinkedList<>(this.children);
         children.add(composable);
-        return new ComposableBodyRoot(configuration, children);
+        return new ComposableBodyRoot(configuration, parseCache, scanner, children,
+                ComposableBody.union(assets, composable.allAssets()));
     }
 
     @Override
@@ -45,15 +63,27 @@ public class ComposableBodyRoot implements ComposableRoot<ComposableBody> {
                 .orElse(ComposableBody.empty());
     }
 
-    private ComposableBody parse(final String template, final CompositionStep step) {
-        final IncludeMarkupHandler includeHandler = new IncludeMarkupHandler(defaultContentRangeFor(step, template),
-                configuration);
-        Parser.PARSER.parse(template, includeHandler);
-        return includeHandler.result(template, step);
+    private ComposableBody parse(final ByteString template, final CompositionStep step) {
+        final ContentRange defaultContentRange = defaultContentRangeFor(step, template);
+        final ParsedTemplate parsed = parseCache.parsed(template, defaultContentRange, t -> {
+            step.record(Trace.Event.PARSE_CACHE_MISS);
+            return scanner.scan(t, defaultContentRange).orElseGet(() -> parse(t, defaultContentRange));
+        });
+        if (!step.recorded(Trace.Event.PARSE_CACHE_MISS)) {
+            step.record(Trace.Event.PARSE_CACHE_HIT);
+        }
+        return ComposableBody.of(step, parsed);
+    }
+
+    private ParsedTemplate parse(final ByteString template, final ContentRange defaultContentRange) {
+        final Utf8Markup markup = Utf8Markup.decode(template);
+        final IncludeMarkupHandler includeHandler = new IncludeMarkupHandler(defaultContentRange, configuration, markup);
+        Parser.PARSER.parse(markup, includeHandler);
+        return includeHandler.result();
     }
 
-    private ContentRange defaultContentRangeFor(final CompositionStep step, final String body) {
-        return step.isRoot() ? ContentRange.allUpToo(body.length())
+    private ContentRange defaultContentRangeFor(final CompositionStep step, final ByteString body) {
+        return step.isRoot() ? ContentRange.allUpToo(body.size())
                 : ContentRange.empty();
     }
 
@@ -66,33 +96,37 @@ public class ComposableBodyRoot implements ComposableRoot<ComposableBody> {
     @Override
     public <P> Response<P> writtenTo(final Response<P> response) {
         return response.payload()
-                .filter(String.class::isInstance)
-                .map(p -> response.withPayload(withAssetLinks(body())))
+                .filter(ComposablePayload.class::isInstance)
+                .map(p -> response.withPayload(ComposablePayload.of(body())))
                 .map(r -> (Response<P>) r)
                 .orElse(response);
     }
 
-    private String body() {
-        return children.stream().map(c -> c.body()).reduce("", (s, t) -> s + t);
-    }
-
-    private String withAssetLinks(final String body) {
-        final String renderedAssets = allAssets()
-                .distinct()
-                .map(Asset::render)
-                .collect(Collectors.joining("\n"));
-        return body.replaceFirst("</head>", renderedAssets + "\n</head>");
+    private ByteString body() {
+        final ByteString assetLinks = assetLinks();
+        final BodySegments segments = new BodySegments();
+        for (final ComposableBody child : children) {
+            child.writtenTo(segments, assetLinks);
+        }
+        return segments.render();
     }
 
-    private Stream<Asset> allAssets() {
-        return children.stream()
-                .flatMap(c -> c.allAssets());
+    private ByteString assetLinks() {
+        if (assets.isEmpty()) {
+            return noAssetLinks;
+        }
+        final StringBuilder result = new StringBuilder();
+        for (final Asset asset : assets) {
+            result.append(asset.render()).append('\n');
+        }
+        return ByteString.encodeUtf8(result.toString());
     }
 
-    private static Optional<String> bodyOf(final Response<?> response) {
+    private static Optional<ByteString> bodyOf(final Response<?> response) {
         return response
                 .payload()
-                .filter(String.class::isInstance)
-                .map(String.class::cast);
+                .filter(ComposablePayload.class::isInstance)
+                .map(ComposablePayload.class::cast)
+                .map(ComposablePayload::bytes);
     }
 }
@@ -1,7 +1,9 @@
 package com.rewedigital.composer.html;
 
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.function.IntUnaryOperator;
 
 import org.attoparser.AbstractMarkupHandler;
 import org.attoparser.ParseException;
@@ -11,24 +13,91 @@ import com.rewedigital.composer.composing.ComposerHtmlConfiguration;
 
 class ContentMarkupHandler extends AbstractMarkupHandler {
 
+    private static final char[] headTag = "head".toCharArray();
+    private static final char[] includeOption = "include".toCharArray();
+
+    /**
+     * The asset element currently parsed. Its name and attributes are only kept as offsets into the parse buffer until
+     * the element is known to be marked for inclusion, the instance is reused for all asset elements.
+     */
+    private static class AssetElement {
+        private char[] buffer;
+        private int typeOffset;
+        private int typeLen;
+        private boolean selfClosing;
+        private int[] attributes = new int[4 * 8];
+        private int attributesLen = 0;
+
+        private void start(final char[] buffer, final int typeOffset, final int typeLen, final boolean selfClosing) {
+            this.buffer = buffer;
+            this.typeOffset = typeOffset;
+            this.typeLen = typeLen;
+            this.selfClosing = selfClosing;
+            this.attributesLen = 0;
+        }
+
+        private void attribute(final int nameOffset, final int nameLen, final int valueOffset, final int valueLen) {
+            if (attributesLen + 4 > attributes.length) {
+                attributes = Arrays.copyOf(attributes, attributes.length * 2);
+            }
+            attributes[attributesLen++] = nameOffset;
+            attributes[attributesLen++] = nameLen;
+            attributes[attributesLen++] = valueOffset;
+            attributes[attributesLen++] = valueLen;
+        }
+
+        private boolean hasOption(final char[] optionsAttribute, final char[] option) {
+            // the last occurrence of an attribute wins, just like it does when building the asset
+            for (int i = attributesLen - 4; i >= 0; i -= 4) {
+                if (TextUtil.equals(true, buffer, attributes[i], attributes[i + 1], optionsAttribute, 0,
+                    optionsAttribute.length)) {
+                    return TextUtil.contains(true, buffer, attributes[i + 2], attributes[i + 3], option, 0,
+                        option.length);
+                }
+            }
+            return false;
+        }
+
+        private Asset build(final String optionsAttribute) {
+            Asset.Builder builder = new Asset.Builder(optionsAttribute)
+                .type(new String(buffer, typeOffset, typeLen))
+                .selfClosing(selfClosing);
+            for (int i = 0; i < attributesLen; i += 4) {
+                builder = builder.attribute(new String(buffer, attributes[i], attributes[i + 1]),
+                    new String(buffer, attributes[i + 2], attributes[i + 3]));
+            }
+            return builder.build();
+        }
+    }
+
     private final char[] contentTag;
     private final String assetOptionsAttribute;
+    private final char[] assetOptionsAttributeName;
+    private final IntUnaryOperator byteOffsets;
 
     private final List<Asset> assets = new LinkedList<>();
 
-    private Asset.Builder current = null;
+    private final AssetElement current = new AssetElement();
+    private boolean parsingAsset = false;
     private final ContentRange defaultContentRange;
+    private final boolean stopAfterContent;
 
     private int contentStart = 0;
     private int contentEnd = 0;
+    private int headEnd = -1;
 
     private boolean parsingHead = false;
 
 
-    public ContentMarkupHandler(final ContentRange defaultContentRange, final ComposerHtmlConfiguration configuration) {
+    public ContentMarkupHandler(final ContentRange defaultContentRange, final ComposerHtmlConfiguration configuration,
+        final IntUnaryOperator byteOffsets) {
         this.defaultContentRange = defaultContentRange;
+        // without a default content range, nothing after the content tag is of interest
+        this.stopAfterContent = defaultContentRange.isEmpty();
         this.contentTag = configuration.contentTag().toCharArray();
         this.assetOptionsAttribute = configuration.assetOptionsAttribute();
+        this.assetOptionsAttributeName = assetOptionsAttribute.toCharArray();
+        this.byteOffsets = byteOffsets;
     }
 
     public ContentRange contentRange() {
@@ -39,6 +108,24 @@ class ContentMarkupHandler extends AbstractMarkupHandler {
         return assets;
     }
 
+    /**
+     * Whether markup at the given offset may be part of the content: it is inside the content tag or, as long as no
+     * content tag has been seen yet, inside the default content range.
+     */
+    public boolean mayBeContent(final int offset) {
+        if (contentEnd > 0) {
+            return false;
+        }
+        return contentStart > 0 || defaultContentRange.isInRange(offset);
+    }
+
+    /**
+     * Offset of the first <code>&lt;/head&gt;</code> close tag or <code>-1</code> if there is none.
+     */
+    public int headEnd() {
+        return headEnd;
+    }
+
     @Override
     public void handleStandaloneElementStart(final char[] buffer, final int nameOffset, final int nameLen,
         final boolean minimized, final int line, final int col) throws ParseException {
@@ -66,25 +153,42 @@ class ContentMarkupHandler extends AbstractMarkupHandler {
         if (isHeadElement(buffer, nameOffset, nameLen)) {
             parsingHead = true;
         } else if (isContentElement(buffer, nameOffset, nameLen)) {
-            contentStart = nameOffset + nameLen + 1;
+            contentStart = byteOffsets.applyAsInt(nameOffset + nameLen + 1);
         } else if (parsingHead && isAssetElement(buffer, nameOffset, nameLen)) {
             startAsset(buffer, nameOffset, nameLen, false);
         }
     }
 
+    @Override
+    public void handleCloseElementStart(final char[] buffer, final int nameOffset, final int nameLen, final int line,
+        final int col) throws ParseException {
+        super.handleCloseElementStart(buffer, nameOffset, nameLen, line, col);
+        if (headEnd < 0 && TextUtil.equals(true, buffer, nameOffset, nameLen, headTag, 0, headTag.length)) {
+            headEnd = byteOffsets.applyAsInt(nameOffset - 2);
+        }
+    }
+
     @Override
     public void handleCloseElementEnd(final char[] buffer, final int nameOffset, final int nameLen, final int line,
         final int col) throws ParseException {
         super.handleCloseElementEnd(buffer, nameOffset, nameLen, line, col);
         if (isHeadElement(buffer, nameOffset, nameLen)) {
             parsingHead = false;
+            stopIfContentParsed();
         } else if (isContentElement(buffer, nameOffset, nameLen) && contentStart >= 0) {
-            contentEnd = nameOffset - 2;
+            contentEnd = byteOffsets.applyAsInt(nameOffset - 2);
+            stopIfContentParsed();
         } else if (parsingAsset()) {
             pushAsset();
         }
     }
 
+    private void stopIfContentParsed() throws ContentParsedException {
+        if (stopAfterContent && contentEnd > 0 && !parsingHead) {
+            throw ContentParsedException.instance;
+        }
+    }
+
     @Override
     public void handleAttribute(final char[] buffer, final int nameOffset, final int nameLen, final int nameLine,
         final int nameCol,
@@ -97,13 +201,12 @@ class ContentMarkupHandler extends AbstractMarkupHandler {
             operatorCol, valueContentOffset, valueContentLen, valueOuterOffset, valueOuterLen, valueLine, valueCol);
 
         if (parsingAsset()) {
-            current = current.attribute(new String(buffer, nameOffset, nameLen),
-                new String(buffer, valueContentOffset, valueContentLen));
+            current.attribute(nameOffset, nameLen, valueContentOffset, valueContentLen);
         }
     }
 
     private boolean parsingAsset() {
-        return current != null;
+        return parsingAsset;
     }
 
     private boolean isAssetElement(final char[] buffer, final int nameOffset, final int nameLen) {
@@ -125,16 +228,15 @@ class ContentMarkupHandler extends AbstractMarkupHandler {
 
 
     private void startAsset(final char[] buffer, final int nameOffset, final int nameLen, final boolean selfClosing) {
-        current = new Asset.Builder(assetOptionsAttribute)
-            .type(new String(buffer, nameOffset, nameLen))
-            .selfClosing(selfClosing);
+        current.start(buffer, nameOffset, nameLen, selfClosing);
+        parsingAsset = true;
     }
 
     private void pushAsset() {
-        if (current.isInclude()) {
-            assets.add(current.build());
+        if (current.hasOption(assetOptionsAttributeName, includeOption)) {
+            assets.add(current.build(assetOptionsAttribute));
         }
-        current = null;
+        parsingAsset = false;
     }
 
 
@@ -0,0 +1,24 @@
+package com.rewedigital.composer.html;
+
+import org.attoparser.ParseException;
+
+/**
+ * Thrown by a markup handler once it has seen all markup it is interested in. The parser passes it on unchanged, the
+ * {@link Parser} stops parsing and treats the document as parsed.
+ */
+class ContentParsedException extends ParseException {
+
+    private static final long serialVersionUID = 1L;
+
+    static final ContentParsedException instance = new ContentParsedException();
+
+    private ContentParsedException() {
+        super("content parsed");
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        // used for control flow only, a stack trace is never needed
+        return this;
+    }
+}
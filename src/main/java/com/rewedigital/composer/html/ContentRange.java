@@ -28,6 +28,10 @@ public class ContentRange {
         return end;
     }
 
+    public boolean isEmpty() {
+        return end <= start;
+    }
+
     public boolean isInRange(final int value) {
         return start <= value && value <= end;
     }
@@ -1,14 +1,13 @@
 package com.rewedigital.composer.html;
 
 import java.time.Duration;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.rewedigital.composer.composing.ComposablePayload;
 import com.rewedigital.composer.composing.ComposingResponse;
 import com.rewedigital.composer.composing.CompositionStep;
 import com.rewedigital.composer.composing.ContentFetcher;
@@ -16,9 +15,12 @@ import com.rewedigital.composer.composing.IncludedFragment;
 import com.rewedigital.composer.composing.ResponseCompositionFragment;
 import com.spotify.apollo.Response;
 
+import okio.ByteString;
+
 /**
  * Describes the include parsed from a template. It contains the start and end
- * offsets of the include element in the template for further processing.
+ * offsets of the include element in the template for further processing. The
+ * fallback is kept as a slice of the template, only copied if it is needed.
  *
  * An included service can {@link #fetch(ContentFetcher, CompositionStep)} the
  * content using a {@link ContentFetcher} creating an instance of
@@ -31,8 +33,11 @@ class HttpFragment implements IncludedFragment {
     public static class Builder {
         private int startOffset;
         private int endOffset;
-        private final Map<String, String> attributes = new HashMap<>();
-        private String fallback;
+        private String path = "";
+        private String ttl;
+        private ByteString markup = ByteString.EMPTY;
+        private int fallbackStart;
+        private int fallbackEnd;
 
         public Builder startOffset(final int startOffset) {
             this.startOffset = startOffset;
@@ -44,13 +49,20 @@ class HttpFragment implements IncludedFragment {
             return this;
         }
 
-        public Builder attribute(final String name, final String value) {
-            attributes.put(name, value);
+        public Builder path(final String path) {
+            this.path = path;
+            return this;
+        }
+
+        public Builder ttl(final String ttl) {
+            this.ttl = ttl;
             return this;
         }
 
-        public Builder fallback(final String fallback) {
-            this.fallback = fallback;
+        public Builder fallback(final ByteString markup, final int start, final int end) {
+            this.markup = markup;
+            this.fallbackStart = start;
+            this.fallbackEnd = Math.max(start, end);
             return this;
         }
 
@@ -60,10 +72,10 @@ class HttpFragment implements IncludedFragment {
     }
 
     public static class WithResponse implements FragmentResponse {
-        private final Response<String> response;
+        private final Response<ComposablePayload> response;
         private final CompositionStep step;
 
-        private WithResponse(final CompositionStep step, final Response<String> response) {
+        private WithResponse(final CompositionStep step, final Response<ComposablePayload> response) {
             this.response = response;
             this.step = step;
 
@@ -72,28 +84,34 @@ class HttpFragment implements IncludedFragment {
 
         @Override
         public CompletableFuture<ResponseCompositionFragment> compose(final Composer composer,
-                final ComposingResponse<String> parent) {
+                final ComposingResponse<ComposablePayload> parent) {
             return composer.compose(parent.withResponse(response), step);
         }
     }
 
     private final int startOffset;
     private final int endOffset;
-    private final Map<String, String> attributes;
-    private final String fallback;
+    private final String path;
+    private final String ttl;
+    private final ByteString markup;
+    private final int fallbackStart;
+    private final int fallbackEnd;
 
     private HttpFragment(final Builder builder) {
         this.startOffset = builder.startOffset;
         this.endOffset = builder.endOffset;
-        this.attributes = new HashMap<>(builder.attributes);
-        this.fallback = builder.fallback;
+        this.path = builder.path;
+        this.ttl = builder.ttl;
+        this.markup = builder.markup;
+        this.fallbackStart = builder.fallbackStart;
+        this.fallbackEnd = builder.fallbackEnd;
     }
 
     @Override
     public CompletableFuture<IncludedFragment.FragmentResponse> fetch(final ContentFetcher fetcher,
             final CompositionStep parentStep) {
         final CompositionStep step = parentStep.childWith(path(), startOffset, endOffset);
-        return fetcher.fetch(path(), fallback(), ttl(), step)
+        return fetcher.fetch(path(), this::fallback, ttl(), step)
                 .thenApply(r -> new WithResponse(step, r));
     }
 
@@ -101,20 +119,20 @@ class HttpFragment implements IncludedFragment {
         return contentRange.isInRange(startOffset);
     }
 
-    private String fallback() {
-        return fallback;
+    private ComposablePayload fallback() {
+        return ComposablePayload.of(markup.substring(fallbackStart, fallbackEnd));
     }
 
     private String path() {
-        return attributes.getOrDefault("path", "");
+        return path;
     }
 
     private Optional<Duration> ttl() {
-        return longAttribute("ttl").map(Duration::ofMillis);
+        return longAttribute("ttl", ttl).map(Duration::ofMillis);
     }
 
-    private Optional<Long> longAttribute(final String name) {
-        return Optional.ofNullable(attributes.get(name)).flatMap(v -> {
+    private Optional<Long> longAttribute(final String name, final String value) {
+        return Optional.ofNullable(value).flatMap(v -> {
             try {
                 return Optional.of(Long.parseLong(v));
             } catch (final NumberFormatException nfEx) {
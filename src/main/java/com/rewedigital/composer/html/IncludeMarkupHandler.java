@@ -1,6 +1,5 @@
 package com.rewedigital.composer.html;
 
-import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
@@ -8,31 +7,41 @@ import java.util.Optional;
 import org.attoparser.AbstractMarkupHandler;
 import org.attoparser.IMarkupHandler;
 import org.attoparser.ParseException;
-import org.attoparser.output.OutputMarkupHandler;
 import org.attoparser.util.TextUtil;
 
 import com.rewedigital.composer.composing.ComposerHtmlConfiguration;
-import com.rewedigital.composer.composing.CompositionStep;
 
 class IncludeMarkupHandler extends AbstractMarkupHandler {
 
+    private static final char[] pathAttribute = "path".toCharArray();
+    private static final char[] ttlAttribute = "ttl".toCharArray();
+
+    // the fallback is a slice of the markup, nothing to handle inside an include
+    private static final IMarkupHandler ignoring = new AbstractMarkupHandler() {};
+
     private final char[] includeTag;
+    private final Utf8Markup markup;
 
     private final List<HttpFragment> includedServices = new ArrayList<>();
     private final ContentMarkupHandler contentMarkupHandler;
     private Optional<HttpFragment.Builder> include = Optional.empty();
-    private StringWriter fallbackWriter;
+    private int attributesEnd;
+    private int fallbackStart;
+    private int fallbackEnd;
     private IMarkupHandler next;
     private boolean collectAttributes = false;
 
-    public IncludeMarkupHandler(final ContentRange defaultContentRange, final ComposerHtmlConfiguration configuration) {
+    public IncludeMarkupHandler(final ContentRange defaultContentRange, final ComposerHtmlConfiguration configuration,
+            final Utf8Markup markup) {
         this.includeTag = configuration.includeTag().toCharArray();
-        this.contentMarkupHandler = new ContentMarkupHandler(defaultContentRange, configuration);
+        this.markup = markup;
+        this.contentMarkupHandler = new ContentMarkupHandler(defaultContentRange, configuration, markup::byteOffset);
         this.next = contentMarkupHandler;
     }
 
-    public ComposableBody result(final String template, final CompositionStep step) {
-        return ComposableBody.of(step, template, contentRange(), includedServices, assets());
+    public ParsedTemplate result() {
+        return new ParsedTemplate(markup.bytes(), contentRange(), contentMarkupHandler.headEnd(), includedServices,
+                assets());
     }
 
     public ContentRange contentRange() {
@@ -49,14 +58,16 @@ class IncludeMarkupHandler extends AbstractMarkupHandler {
             throws ParseException {
         next.handleOpenElementStart(buffer, nameOffset, nameLen, line, col);
         if (isIncludeElement(buffer, nameOffset, nameLen)) {
-            final HttpFragment.Builder value = new HttpFragment.Builder();
-            value.startOffset(nameOffset - 1);
-            include = Optional.of(value);
-            collectAttributes = true;
-
-            // Store the content..
-            fallbackWriter = new StringWriter();
-            next = new OutputMarkupHandler(fallbackWriter);
+            final int startOffset = markup.byteOffset(nameOffset - 1);
+            // includes that can't be part of the content are skipped, but never materialized
+            if (contentMarkupHandler.mayBeContent(startOffset)) {
+                final HttpFragment.Builder value = new HttpFragment.Builder();
+                value.startOffset(startOffset);
+                include = Optional.of(value);
+                collectAttributes = true;
+                attributesEnd = nameOffset + nameLen;
+            }
+            next = ignoring;
         }
     }
 
@@ -67,7 +78,11 @@ class IncludeMarkupHandler extends AbstractMarkupHandler {
             final int line, final int col)
             throws ParseException {
         if (isIncludeElement(buffer, nameOffset, nameLen)) {
+            if (!include.isPresent()) {
+                return;
+            }
             collectAttributes = false;
+            fallbackStart = markup.byteOffset(indexOf('>', buffer, attributesEnd) + 1);
         } else {
             next.handleOpenElementEnd(buffer, nameOffset, nameLen, line, col);
         }
@@ -81,9 +96,14 @@ class IncludeMarkupHandler extends AbstractMarkupHandler {
             throws ParseException {
 
         if (collectAttributes) {
+            // only known attributes are of interest, don't create strings for any other
             final HttpFragment.Builder includedService = include.get();
-            includedService.attribute(new String(buffer, nameOffset, nameLen),
-                    new String(buffer, valueContentOffset, valueContentLen));
+            if (isAttribute(pathAttribute, buffer, nameOffset, nameLen)) {
+                includedService.path(new String(buffer, valueContentOffset, valueContentLen));
+            } else if (isAttribute(ttlAttribute, buffer, nameOffset, nameLen)) {
+                includedService.ttl(new String(buffer, valueContentOffset, valueContentLen));
+            }
+            attributesEnd = Math.max(nameOffset + nameLen, valueOuterOffset + valueOuterLen);
         } else {
             next.handleAttribute(buffer, nameOffset, nameLen, nameLine, nameCol, operatorOffset, operatorLen,
                     operatorLine, operatorCol, valueContentOffset, valueContentLen, valueOuterOffset, valueOuterLen,
@@ -100,6 +120,8 @@ class IncludeMarkupHandler extends AbstractMarkupHandler {
             throws ParseException {
         if (!isIncludeElement(buffer, nameOffset, nameLen)) {
             next.handleCloseElementStart(buffer, nameOffset, nameLen, line, col);
+        } else if (include.isPresent()) {
+            fallbackEnd = markup.byteOffset(nameOffset - 2);
         }
     }
 
@@ -107,15 +129,16 @@ class IncludeMarkupHandler extends AbstractMarkupHandler {
     public void handleCloseElementEnd(final char[] buffer, final int nameOffset, final int nameLen, final int line,
             final int col)
             throws ParseException {
-        if (isIncludeElement(buffer, nameOffset, nameLen) && include.isPresent()) {
-            final HttpFragment.Builder value = include.get();
-            value.endOffset(nameOffset + nameLen + 1);
-            value.fallback(fallbackWriter.toString());
-            includedServices.add(value.build());
-            include = Optional.empty();
+        if (isIncludeElement(buffer, nameOffset, nameLen) && next == ignoring) {
+            if (include.isPresent()) {
+                final HttpFragment.Builder value = include.get();
+                value.endOffset(markup.byteOffset(nameOffset + nameLen + 1));
+                value.fallback(markup.bytes(), fallbackStart, fallbackEnd);
+                includedServices.add(value.build());
+                include = Optional.empty();
+            }
 
             // Reset the chain
-            fallbackWriter = null;
             next = contentMarkupHandler;
         }
         next.handleCloseElementEnd(buffer, nameOffset, nameLen, line, col);
@@ -125,6 +148,19 @@ class IncludeMarkupHandler extends AbstractMarkupHandler {
         return TextUtil.contains(true, buffer, nameOffset, nameLen, includeTag, 0, includeTag.length);
     }
 
+    private static boolean isAttribute(final char[] attribute, final char[] buffer, final int nameOffset,
+            final int nameLen) {
+        return TextUtil.equals(true, buffer, nameOffset, nameLen, attribute, 0, attribute.length);
+    }
+
+    private static int indexOf(final char c, final char[] buffer, final int offset) {
+        int index = offset;
+        while (index < buffer.length && buffer[index] != c) {
+            index++;
+        }
+        return index;
+    }
+
     @Override
     public void handleDocumentStart(
             final long startTimeNanos, final int line, final int col)
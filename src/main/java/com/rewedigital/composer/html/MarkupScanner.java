@@ -0,0 +1,74 @@
+package com.rewedigital.composer.html;
+
+import java.util.Collections;
+import java.util.Optional;
+
+import com.rewedigital.composer.composing.ComposerHtmlConfiguration;
+
+import okio.ByteString;
+
+/**
+ * Cheap pre-scan of markup deciding whether it needs to be parsed at all.
+ *
+ * <p>
+ * Markup that contains neither the include tag nor the asset options attribute has no includes and no assets, so only
+ * the content range is of interest. If the content tag is used in its plain form (<code>&lt;tag&gt;</code> ...
+ * <code>&lt;/tag&gt;</code>) the range is sliced out directly, otherwise the full parser is used.
+ *
+ * <p>
+ * All tags and attributes searched for are ASCII, so they are searched for in the UTF-8 encoded markup directly: the
+ * offsets found are byte offsets, and the markup is neither decoded nor copied.
+ */
+class MarkupScanner {
+
+    private static final ByteString commentStart = ByteString.encodeUtf8("<!--");
+    private static final ByteString headEndTag = ByteString.encodeUtf8("</head>");
+
+    private final ByteString includeTag;
+    private final ByteString contentTag;
+    private final ByteString assetOptionsAttribute;
+
+    MarkupScanner(final ComposerHtmlConfiguration configuration) {
+        this.includeTag = ByteString.encodeUtf8(configuration.includeTag());
+        this.contentTag = ByteString.encodeUtf8(configuration.contentTag());
+        this.assetOptionsAttribute = ByteString.encodeUtf8(configuration.assetOptionsAttribute());
+    }
+
+    public Optional<ParsedTemplate> scan(final ByteString markup, final ContentRange defaultContentRange) {
+        if (markup.indexOf(includeTag) >= 0 || markup.indexOf(assetOptionsAttribute) >= 0) {
+            return Optional.empty();
+        }
+        return contentRange(markup, defaultContentRange)
+                .map(range -> new ParsedTemplate(markup, range, markup.indexOf(headEndTag), Collections.emptyList(),
+                        Collections.emptyList()));
+    }
+
+    private Optional<ContentRange> contentRange(final ByteString markup, final ContentRange defaultContentRange) {
+        final int open = markup.indexOf(contentTag);
+        if (open < 0) {
+            return Optional.of(defaultContentRange);
+        }
+
+        final int start = open + contentTag.size() + 1;
+        if (!isCharAt(markup, open - 1, '<') || !isCharAt(markup, start - 1, '>')) {
+            return Optional.empty();
+        }
+
+        final int next = markup.indexOf(contentTag, start);
+        final int end = next - 2;
+        if (next < 0 || !isCharAt(markup, end, '<') || !isCharAt(markup, end + 1, '/')
+                || !isCharAt(markup, next + contentTag.size(), '>')) {
+            return Optional.empty();
+        }
+
+        final int comment = markup.indexOf(commentStart);
+        if (0 <= comment && comment < end) {
+            return Optional.empty();
+        }
+        return Optional.of(new ContentRange(start, end));
+    }
+
+    private static boolean isCharAt(final ByteString markup, final int index, final char c) {
+        return 0 <= index && index < markup.size() && markup.getByte(index) == c;
+    }
+}
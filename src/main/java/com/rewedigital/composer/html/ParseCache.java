@@ -0,0 +1,121 @@
+package com.rewedigital.composer.html;
+
+import java.util.Objects;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Gauge;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.rewedigital.composer.composing.ComposerHtmlConfiguration;
+import com.spotify.metrics.core.MetricId;
+import com.spotify.metrics.core.SemanticMetricRegistry;
+
+import okio.ByteString;
+
+/**
+ * <code>ParseCache</code> is a bounded, {@link Caffeine}-based cache of {@link ParsedTemplate}s.
+ *
+ * <p>
+ * Templates and content fragments usually do not change between requests. The cache is keyed by the markup itself
+ * (and the default content range that depends on the composition step), so byte-identical markup is scanned and, if
+ * necessary, parsed once and the result is reused. Comparing the markup on a hit is a lot cheaper than parsing it again and, other than a
+ * plain hash or an upstream <code>ETag</code>, guarantees that the cached offsets match the markup. As the cached
+ * markup dominates the memory used by the cache, it is bounded by the total size of the markup, not by the number of
+ * entries.
+ */
+public class ParseCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ParseCache.class);
+    private static final ParseCache disabled = new ParseCache(null);
+
+    private static class Key {
+        private final ByteString template;
+        private final ContentRange defaultContentRange;
+
+        private Key(final ByteString template, final ContentRange defaultContentRange) {
+            this.template = template;
+            this.defaultContentRange = defaultContentRange;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(template, defaultContentRange);
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null) {
+                return false;
+            }
+            if (getClass() != obj.getClass()) {
+                return false;
+            }
+            final Key other = (Key) obj;
+            return Objects.equals(defaultContentRange, other.defaultContentRange) &&
+                    Objects.equals(template, other.template);
+        }
+    }
+
+    private final Cache<Key, ParsedTemplate> cache;
+
+    public static ParseCache create(final ComposerHtmlConfiguration configuration) {
+        if (!configuration.parseCacheEnabled()) {
+            return disabled;
+        }
+
+        return new ParseCache(Caffeine.newBuilder()
+                .maximumWeight(configuration.parseCacheMaxBytes())
+                .weigher((Key key, ParsedTemplate parsed) -> key.template.size())
+                .recordStats()
+                .build());
+    }
+
+    public static ParseCache disabled() {
+        return disabled;
+    }
+
+    private ParseCache(final Cache<Key, ParsedTemplate> cache) {
+        this.cache = cache;
+    }
+
+    ParsedTemplate parsed(final ByteString template, final ContentRange defaultContentRange,
+            final Function<ByteString, ParsedTemplate> parser) {
+        if (cache == null) {
+            return parser.apply(template);
+        }
+
+        return cache.get(new Key(template, defaultContentRange), key -> {
+            LOGGER.debug("parsing markup not found in cache (length: {})", template.size());
+            return parser.apply(key.template);
+        });
+    }
+
+    /**
+     * Registers the number of cache hits and misses, if the cache is enabled.
+     */
+    public void registerMetrics(final SemanticMetricRegistry registry) {
+        if (cache == null) {
+            return;
+        }
+        registry.register(metricId("parse-cache-hits"), (Gauge<Long>) this::hitCount);
+        registry.register(metricId("parse-cache-misses"), (Gauge<Long>) this::missCount);
+    }
+
+    private static MetricId metricId(final String what) {
+        return MetricId.build("composer").tagged("what", what, "unit", "lookup");
+    }
+
+    public long hitCount() {
+        return cache == null ? 0 : cache.stats().hitCount();
+    }
+
+    public long missCount() {
+        return cache == null ? 0 : cache.stats().missCount();
+    }
+}
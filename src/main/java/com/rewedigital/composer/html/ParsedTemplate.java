@@ -0,0 +1,65 @@
+package com.rewedigital.composer.html;
+
+import static java.util.stream.Collectors.toList;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import okio.ByteString;
+
+/**
+ * Result of parsing a template or content fragment: the range of the content to compose, the includes found in this
+ * range, the assets marked for inclusion in the head section and where this section ends. Instances only hold the markup, byte offsets into it
+ * and values parsed from it, thus they can be shared between compositions of identical markup.
+ */
+class ParsedTemplate {
+
+    private final ByteString markup;
+    private final ContentRange contentRange;
+    private final int headEnd;
+    private final List<HttpFragment> includedFragments;
+    private final Set<Asset> assets;
+
+    ParsedTemplate(final ByteString markup, final ContentRange contentRange, final int headEnd,
+            final List<HttpFragment> includedFragments, final List<Asset> assets) {
+        this.markup = markup;
+        this.contentRange = contentRange;
+        this.headEnd = headEnd;
+        this.includedFragments = Collections.unmodifiableList(includedFragments.stream()
+                .filter(f -> f.isInRage(contentRange))
+                .collect(toList()));
+        this.assets = assets.isEmpty() ? Collections.emptySet()
+                : Collections.unmodifiableSet(new LinkedHashSet<>(assets));
+    }
+
+    /**
+     * The markup the offsets refer to. This is the parsed markup unless it was not valid UTF-8.
+     */
+    public ByteString markup() {
+        return markup;
+    }
+
+    public ContentRange contentRange() {
+        return contentRange;
+    }
+
+    /**
+     * Offset of the <code>&lt;/head&gt;</code> close tag in the markup or <code>-1</code> if there is none.
+     */
+    public int headEnd() {
+        return headEnd;
+    }
+
+    public List<HttpFragment> includedFragments() {
+        return includedFragments;
+    }
+
+    /**
+     * The distinct assets in order of their occurrence.
+     */
+    public Set<Asset> assets() {
+        return assets;
+    }
+}
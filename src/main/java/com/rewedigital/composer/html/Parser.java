@@ -20,11 +20,18 @@ class Parser {
         return htmlConfiguration;
     }
 
-    public void parse(final String template, final IMarkupHandler markupHandler) {
-        Objects.requireNonNull(template);
+    public void parse(final Utf8Markup markup, final IMarkupHandler markupHandler) {
+        Objects.requireNonNull(markup);
+        parse(markup.chars(), markup.length(), markupHandler);
+    }
+
+    // parsing from a char[] instead of a reader makes the parser report offsets relative to the whole document
+    private void parse(final char[] template, final int length, final IMarkupHandler markupHandler) {
         Objects.requireNonNull(markupHandler);
         try {
-            _PARSER.parse(template, markupHandler);
+            _PARSER.parse(template, 0, length, markupHandler);
+        } catch (final ContentParsedException e) {
+            // the handler has seen everything it needs, the rest of the document is skipped
         } catch (final ParseException e) {
             throw new RuntimeException(e);
         }
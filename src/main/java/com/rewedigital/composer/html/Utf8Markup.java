@@ -0,0 +1,93 @@
+package com.rewedigital.composer.html;
+
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import okio.ByteString;
+
+/**
+ * UTF-8 encoded markup decoded for parsing. The parser reports offsets into the decoded chars while composition works
+ * on the encoded bytes, {@link #byteOffset(int)} translates the former into the latter.
+ *
+ * <p>
+ * Offsets have to be translated in (mostly) ascending order to be cheap, which is the order the parser reports them
+ * in. For pure ASCII markup chars and bytes are the same and no translation is needed at all.
+ */
+class Utf8Markup {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(Utf8Markup.class);
+
+    private final ByteString bytes;
+    private final char[] chars;
+    private final int length;
+    private final boolean ascii;
+
+    private int charCursor = 0;
+    private int byteCursor = 0;
+
+    public static Utf8Markup decode(final ByteString markup) {
+        try {
+            return new Utf8Markup(markup, StandardCharsets.UTF_8.newDecoder().decode(markup.asByteBuffer()));
+        } catch (final CharacterCodingException e) {
+            // offsets are only translated correctly for well-formed input, thus compose the replaced markup instead
+            LOGGER.info("markup is not valid UTF-8, replacing malformed input (length: {})", markup.size());
+            final ByteString replaced = ByteString.encodeUtf8(markup.utf8());
+            return new Utf8Markup(replaced, CharBuffer.wrap(replaced.utf8()));
+        }
+    }
+
+    private Utf8Markup(final ByteString bytes, final CharBuffer chars) {
+        this.bytes = bytes;
+        this.length = chars.remaining();
+        this.chars = chars.hasArray() && chars.arrayOffset() == 0 && chars.position() == 0 ? chars.array()
+                : toArray(chars);
+        this.ascii = bytes.size() == length;
+    }
+
+    public ByteString bytes() {
+        return bytes;
+    }
+
+    public char[] chars() {
+        return chars;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public int byteOffset(final int charOffset) {
+        if (ascii) {
+            return charOffset;
+        }
+        if (charOffset < charCursor) {
+            charCursor = 0;
+            byteCursor = 0;
+        }
+        while (charCursor < charOffset) {
+            final char c = chars[charCursor++];
+            if (c < 0x80) {
+                byteCursor += 1;
+            } else if (c < 0x800) {
+                byteCursor += 2;
+            } else if (Character.isHighSurrogate(c) && charCursor < length
+                    && Character.isLowSurrogate(chars[charCursor])) {
+                charCursor++;
+                byteCursor += 4;
+            } else {
+                byteCursor += 3;
+            }
+        }
+        return byteCursor;
+    }
+
+    private static char[] toArray(final CharBuffer chars) {
+        final char[] result = new char[chars.remaining()];
+        chars.get(result);
+        return result;
+    }
+}
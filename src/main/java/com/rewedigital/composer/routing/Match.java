@@ -1,48 +1,70 @@
 package com.rewedigital.composer.routing;
 
 import java.time.Duration;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 
 public class Match {
 
     private final String backend;
+    private final PathTemplate backendTemplate;
     private final Optional<Duration> ttl;
+    private final Optional<Duration> budget;
     private final RouteTypeName routeType;
 
-    private Match(final String backend, final Optional<Duration> ttl, final RouteTypeName routeType) {
+    private Match(final String backend, final Optional<Duration> ttl, final Optional<Duration> budget,
+        final RouteTypeName routeType) {
         this.backend = backend;
+        this.backendTemplate = PathTemplate.of(backend);
         this.ttl = ttl;
+        this.budget = budget;
         this.routeType = routeType;
     }
 
     public static Match of(final String backend, final RouteTypeName routeType) {
-        return new Match(backend, Optional.empty(), routeType);
+        return new Match(backend, Optional.empty(), Optional.empty(), routeType);
     }
     
     public static Match of(final String backend, final Duration ttl, final RouteTypeName routeType) {
-        return new Match(backend, Optional.of(ttl), routeType);
+        return new Match(backend, Optional.of(ttl), Optional.empty(), routeType);
     }
     
     public static Match of(final String backend, final Optional<Duration> ttl, final RouteTypeName routeType) {
-        return new Match(backend, ttl, routeType);
+        return new Match(backend, ttl, Optional.empty(), routeType);
+    }
+
+    public static Match of(final String backend, final Optional<Duration> ttl, final Optional<Duration> budget,
+        final RouteTypeName routeType) {
+        return new Match(backend, ttl, budget, routeType);
     }
 
     public String backend() {
         return backend;
     }
 
+    public String expandedBackend(final Map<String, Object> arguments) {
+        return backendTemplate.expand(arguments);
+    }
+
     public Optional<Duration> ttl() {
         return ttl;
     }
 
+    /**
+     * The time a composed page of this route has to be completed in, including the time to fetch the template.
+     */
+    public Optional<Duration> budget() {
+        return budget;
+    }
+
     public RouteType routeType(final RouteTypes routeTypes) {
         return routeType.from(routeTypes);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(backend, ttl, routeType);
+        return Objects.hash(backend, ttl, budget, routeType);
     }
 
     @Override
@@ -57,7 +79,8 @@ public class Match {
             return false;
         }
         final Match other = (Match) obj;
-        return Objects.equals(backend, other.backend) && routeType == other.routeType && Objects.equals(ttl, other.ttl);
+        return Objects.equals(backend, other.backend) && routeType == other.routeType && Objects.equals(ttl, other.ttl)
+            && Objects.equals(budget, other.budget);
     }
 
 }
@@ -0,0 +1,48 @@
+package com.rewedigital.composer.routing;
+
+import java.util.Map;
+import java.util.Objects;
+
+import com.damnhandy.uri.template.UriTemplate;
+
+/**
+ * A path that may contain <a href="https://tools.ietf.org/html/rfc6570">URI template</a> expressions. The template is
+ * compiled once per thread and can be expanded many times, paths without expressions are used as they are. Expanding
+ * stores the arguments in the compiled template, so threads don't share it.
+ */
+public class PathTemplate {
+
+    private final String path;
+    private final ThreadLocal<UriTemplate> template;
+
+    public static PathTemplate of(final String path) {
+        Objects.requireNonNull(path);
+        if (path.indexOf('{') < 0) {
+            return new PathTemplate(path, null);
+        }
+        // fail on malformed templates right away, not on first expansion
+        UriTemplate.fromTemplate(path);
+        return new PathTemplate(path, ThreadLocal.withInitial(() -> UriTemplate.fromTemplate(path)));
+    }
+
+    private PathTemplate(final String path, final ThreadLocal<UriTemplate> template) {
+        this.path = path;
+        this.template = template;
+    }
+
+    public String expand(final Map<String, Object> arguments) {
+        if (template == null) {
+            return path;
+        }
+        return template.get().expand(arguments);
+    }
+
+    public String path() {
+        return path;
+    }
+
+    @Override
+    public String toString() {
+        return path;
+    }
+}
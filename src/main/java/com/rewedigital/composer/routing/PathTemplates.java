@@ -0,0 +1,26 @@
+package com.rewedigital.composer.routing;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/**
+ * Bounded cache of compiled {@link PathTemplate}s, e.g. for the paths of includes that are expanded on every request.
+ */
+public class PathTemplates {
+
+    private final Cache<String, PathTemplate> cache;
+
+    public static PathTemplates create(final long maximumSize) {
+        return new PathTemplates(Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .build());
+    }
+
+    private PathTemplates(final Cache<String, PathTemplate> cache) {
+        this.cache = cache;
+    }
+
+    public PathTemplate get(final String path) {
+        return cache.get(path, PathTemplate::of);
+    }
+}
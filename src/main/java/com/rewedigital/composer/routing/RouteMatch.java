@@ -7,12 +7,11 @@ import java.util.Collections;
 import java.util.Map;
 import java.util.Optional;
 
-import com.damnhandy.uri.template.UriTemplate;
-
 public class RouteMatch {
 
     private final Match backend;
     private final Map<String, Object> parsedPathArguments;
+    private String expandedPath;
 
     public RouteMatch(final Match backend, final Map<String, String> parsedPathArguments) {
         this.backend = requireNonNull(backend);
@@ -27,6 +26,10 @@ public class RouteMatch {
         return backend.ttl();
     }
 
+    public Optional<Duration> budget() {
+        return backend.budget();
+    }
+
     public RouteType routeType(final RouteTypes routeTypes) {
         return backend.routeType(routeTypes);
     }
@@ -36,7 +39,10 @@ public class RouteMatch {
     }
 
     public String expandedPath() {
-        return UriTemplate.fromTemplate(backend.backend()).expand(parsedPathArguments);
+        if (expandedPath == null) {
+            expandedPath = backend.expandedBackend(parsedPathArguments);
+        }
+        return expandedPath;
     }
 
     @Override
@@ -3,6 +3,7 @@ package com.rewedigital.composer.routing;
 import java.util.Objects;
 
 import com.rewedigital.composer.composing.TemplateComposer;
+import com.rewedigital.composer.composing.Tracing;
 
 /**
  * Factory creating a {@link RouteType} instance to handle a specific route type.
@@ -11,11 +12,18 @@ public class RouteTypes {
 
     private final TemplateComposer.Factory composerFactory;
     private final CompositionAwareRequestClient templateClient;
+    private final Tracing tracing;
 
     public RouteTypes(final TemplateComposer.Factory composerFactory,
             final CompositionAwareRequestClient templateClient) {
+        this(composerFactory, templateClient, Tracing.disabled());
+    }
+
+    public RouteTypes(final TemplateComposer.Factory composerFactory,
+            final CompositionAwareRequestClient templateClient, final Tracing tracing) {
         this.templateClient = Objects.requireNonNull(templateClient);
         this.composerFactory = Objects.requireNonNull(composerFactory);
+        this.tracing = Objects.requireNonNull(tracing);
     }
 
     public ProxyRoute proxy() {
@@ -23,7 +31,7 @@ public class RouteTypes {
     }
 
     public TemplateRoute template() {
-        return new TemplateRoute(templateClient, composerFactory);
+        return new TemplateRoute(templateClient, composerFactory, tracing);
     }
 
 }
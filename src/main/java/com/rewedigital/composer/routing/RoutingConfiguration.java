@@ -37,10 +37,13 @@ public class RoutingConfiguration {
         final String type = config.getString("type");
         final String target = config.getString("target");
         final Optional<Duration> ttl = optionalDuration(config, "ttl");
+        final Optional<Duration> budget = optionalDuration(config, "budget");
 
-        final Rule<Match> result = Rule.fromUri(path, method, Match.of(target, ttl, RouteTypeName.valueOf(type)));
-        LOGGER.info("Registered local route for path={}, method={}, target={}, type={} with a request ttl={}", path,
-            method,target, type, ttl);
+        final Rule<Match> result =
+            Rule.fromUri(path, method, Match.of(target, ttl, budget, RouteTypeName.valueOf(type)));
+        LOGGER.info(
+            "Registered local route for path={}, method={}, target={}, type={} with a request ttl={} and budget={}",
+            path, method, target, type, ttl, budget);
         return result;
     }
 
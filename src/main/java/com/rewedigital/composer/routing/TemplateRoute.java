@@ -5,9 +5,13 @@ import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
 
+import com.rewedigital.composer.composing.ComposablePayload;
 import com.rewedigital.composer.composing.ComposingResponse;
+import com.rewedigital.composer.composing.Deadline;
 import com.rewedigital.composer.composing.ResponseComposition;
 import com.rewedigital.composer.composing.TemplateComposer;
+import com.rewedigital.composer.composing.Trace;
+import com.rewedigital.composer.composing.Tracing;
 import com.spotify.apollo.Client;
 import com.spotify.apollo.RequestContext;
 import com.spotify.apollo.Response;
@@ -23,28 +27,40 @@ public class TemplateRoute implements RouteType {
 
     private final TemplateComposer.Factory composerFactory;
     private final CompositionAwareRequestClient templateClient;
+    private final Tracing tracing;
 
     public TemplateRoute(final CompositionAwareRequestClient templateClient,
             final TemplateComposer.Factory composerFactory) {
+        this(templateClient, composerFactory, Tracing.disabled());
+    }
+
+    public TemplateRoute(final CompositionAwareRequestClient templateClient,
+            final TemplateComposer.Factory composerFactory, final Tracing tracing) {
         this.templateClient = Objects.requireNonNull(templateClient);
         this.composerFactory = Objects.requireNonNull(composerFactory);
+        this.tracing = Objects.requireNonNull(tracing);
     }
 
     @Override
     public CompletionStage<Response<ByteString>> execute(final RouteMatch rm, final RequestContext context,
             final ResponseComposition extensions) {
+        final Deadline deadline = Deadline.after(rm.budget());
+        final Trace trace = tracing.start();
         return templateClient.fetch(rm, context, extensions)
-                .thenCompose(
-                        templateResponse -> process(context.requestScopedClient(), rm.parsedPathArguments(),
-                                templateResponse, rm.expandedPath()));
+                .thenCompose(templateResponse -> {
+                    trace.templateFetched();
+                    return process(context.requestScopedClient(), rm.parsedPathArguments(), templateResponse,
+                            rm.expandedPath(), deadline, trace);
+                })
+                .thenApply(response -> tracing.finish(trace, rm.expandedPath(), response));
     }
 
     private CompletionStage<Response<ByteString>> process(final Client client,
             final Map<String, Object> pathArguments, final ComposingResponse<ByteString> templateResponse,
-            final String path) {
+            final String path, final Deadline deadline, final Trace trace) {
 
         return templateResponse.toComposablePayload()
-                .map(template -> composerFactory.build(client, path, pathArguments, template)
+                .map(template -> composerFactory.build(client, path, pathArguments, template, deadline, trace)
                         .composeTemplate()
                         .thenApply(r -> r.composedResponse())
                         // TODO compose cache-control header
@@ -55,7 +71,7 @@ public class TemplateRoute implements RouteType {
                         Response.of(Status.INTERNAL_SERVER_ERROR, ByteString.encodeUtf8("Ohh.. noose!"))));
     }
 
-    private Response<ByteString> toByteStringPayload(final Response<String> response) {
-        return response.withPayload(response.payload().map(ByteString::encodeUtf8).orElse(ByteString.EMPTY));
+    private Response<ByteString> toByteStringPayload(final Response<ComposablePayload> response) {
+        return response.withPayload(response.payload().map(ComposablePayload::bytes).orElse(ByteString.EMPTY));
     }
 }
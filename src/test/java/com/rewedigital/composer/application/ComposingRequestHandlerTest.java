@@ -18,6 +18,8 @@ import org.junit.Test;
 import com.rewedigital.composer.composing.ComposingResponse;
 import com.rewedigital.composer.composing.ResponseComposition;
 import com.rewedigital.composer.composing.ResponseCompositionHandler;
+import com.rewedigital.composer.composing.Tracing;
+import com.rewedigital.composer.composing.TracingConfiguration;
 import com.rewedigital.composer.routing.BackendRouting;
 import com.rewedigital.composer.routing.CompositionAwareRequestClient;
 import com.rewedigital.composer.routing.Match;
@@ -30,6 +32,7 @@ import com.spotify.apollo.RequestContext;
 import com.spotify.apollo.Response;
 import com.spotify.apollo.Status;
 import com.spotify.apollo.route.Rule;
+import com.typesafe.config.ConfigValueFactory;
 
 import okio.ByteString;
 
@@ -48,6 +51,18 @@ public class ComposingRequestHandlerTest {
         assertThat(response.payload().get().utf8()).isEqualTo(SERVICE_RESPONSE);
     }
 
+    @Test
+    public void addsServerTimingHeaderToTemplateRouteIfConfigured() throws Exception {
+        final RequestHandler handler = new RequestHandler(aRouter("/<path:path>", TEMPLATE),
+                RoutingResult.returning(Status.OK, SERVICE_RESPONSE, serverTiming()),
+                sessionSerializer());
+
+        final Response<ByteString> response = handler.execute(aContext()).toCompletableFuture().get();
+
+        assertThat(response.header("Server-Timing")).hasValueSatisfying(
+                value -> assertThat(value).startsWith("template;dur=").contains("total;dur="));
+    }
+
     @Test
     public void returnsDefaultResponseFromErrorOnTemplateRoute() throws Exception {
         final RequestHandler handler = new RequestHandler(aRouter("/<path:path>", TEMPLATE),
@@ -87,6 +102,11 @@ public class ComposingRequestHandlerTest {
         return context;
     }
 
+    private static Tracing serverTiming() {
+        return Tracing.create(TracingConfiguration.fromConfig(DefaultConfiguration.defaultConfiguration()
+                .getConfig("composer.html.trace").withValue("server-timing", ConfigValueFactory.fromAnyRef(true))));
+    }
+
     private ResponseCompositionHandler sessionSerializer() {
         return new ResponseCompositionHandler() {
 
@@ -101,6 +121,10 @@ public class ComposingRequestHandlerTest {
     private static class RoutingResult extends CompositionAwareRequestClient {
 
         public static RouteTypes returning(final Status status, final String responseBody) {
+            return returning(status, responseBody, Tracing.disabled());
+        }
+
+        public static RouteTypes returning(final Status status, final String responseBody, final Tracing tracing) {
             return new RouteTypes(composerFactory(), new CompositionAwareRequestClient() {
                 @Override
                 public CompletionStage<ComposingResponse<ByteString>> fetch(final RouteMatch rm,
@@ -109,7 +133,7 @@ public class ComposingRequestHandlerTest {
                             ComposingResponse.of(Response.of(status, ByteString.encodeUtf8(responseBody)),
                                     extension));
                 }
-            });
+            }, tracing);
         }
 
         private static ComposerFactory composerFactory() {
@@ -0,0 +1,100 @@
+package com.rewedigital.composer.application;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.rewedigital.composer.caching.HttpCache;
+import com.rewedigital.composer.composing.ComposablePayload;
+import com.rewedigital.composer.composing.CompositionStep;
+import com.rewedigital.composer.composing.FetchScheduler;
+import com.rewedigital.composer.composing.Hedging;
+import com.rewedigital.composer.composing.HedgingConfiguration;
+import com.rewedigital.composer.composing.ResponseComposition;
+import com.rewedigital.composer.helper.ARequest;
+import com.rewedigital.composer.routing.PathTemplates;
+import com.spotify.apollo.Client;
+import com.spotify.apollo.Environment;
+import com.spotify.apollo.Response;
+import com.spotify.apollo.environment.IncomingRequestAwareClient;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigValueFactory;
+
+import okio.ByteString;
+
+public class ValidatingContentFetcherTest {
+
+    private final Hedging hedging = Hedging.create(HedgingConfiguration.fromConfig(config("composer.html.fetch.hedging")
+        .withValue("enabled", ConfigValueFactory.fromAnyRef(true))
+        .withValue("delay", ConfigValueFactory.fromAnyRef(20))
+        .withValue("percentile", ConfigValueFactory.fromAnyRef(0))
+        .withValue("max-ratio", ConfigValueFactory.fromAnyRef(1))));
+
+    @Test
+    public void hedgedRequestIsNotCoalescedWithTheRequestItHedges() throws Exception {
+        final IncomingRequestAwareClient upstream = mock(IncomingRequestAwareClient.class);
+        final CompletableFuture<Response<ByteString>> original = new CompletableFuture<>();
+        final CompletableFuture<Response<ByteString>> hedged = CompletableFuture.completedFuture(htmlResponse("hedged"));
+        when(upstream.send(any(), any())).thenReturn(original).thenReturn(hedged);
+        final ValidatingContentFetcher fetcher = fetcher(throughHttpCache(upstream), FetchScheduler.unlimited().page(2));
+
+        final Response<ComposablePayload> response = fetcher
+            .fetch("http://mock/", ComposablePayload::empty, Optional.empty(), step())
+            .get(5, TimeUnit.SECONDS);
+
+        assertThat(response.payload().map(ComposablePayload::utf8)).contains("hedged");
+        verify(upstream, times(2)).send(argThat(ARequest.withoutHeader(HttpCache.noCoalescingHeader)), any());
+    }
+
+    @Test
+    public void hedgedRequestWaitsForAFetchSlot() throws Exception {
+        final IncomingRequestAwareClient upstream = mock(IncomingRequestAwareClient.class);
+        final CompletableFuture<Response<ByteString>> original = new CompletableFuture<>();
+        when(upstream.send(any(), any())).thenReturn(original);
+        final ValidatingContentFetcher fetcher = fetcher(throughHttpCache(upstream), FetchScheduler.unlimited().page(1));
+
+        final CompletableFuture<Response<ComposablePayload>> response =
+            fetcher.fetch("http://mock/", ComposablePayload::empty, Optional.empty(), step());
+        Thread.sleep(100);
+        original.complete(htmlResponse("original"));
+
+        assertThat(response.get(5, TimeUnit.SECONDS).payload().map(ComposablePayload::utf8)).contains("original");
+        verify(upstream, times(1)).send(any(), any());
+    }
+
+    private ValidatingContentFetcher fetcher(final Client client, final FetchScheduler.Page page) {
+        return new ValidatingContentFetcher(client, Collections.emptyMap(),
+            ResponseComposition.of(Collections.emptyList()), 10, PathTemplates.create(10), page, hedging);
+    }
+
+    private static Client throughHttpCache(final IncomingRequestAwareClient upstream) {
+        final Environment environment = mock(Environment.class);
+        when(environment.config()).thenReturn(DefaultConfiguration.defaultConfiguration());
+        final HttpCache cache = new HttpCache(() -> environment);
+        return request -> cache.withCaching(request, Optional.empty(), upstream);
+    }
+
+    private static Response<ByteString> htmlResponse(final String body) {
+        return Response.forPayload(ByteString.encodeUtf8(body)).withHeader("Content-Type", "text/html")
+            .withHeader("Cache-Control", "max-age=60");
+    }
+
+    private static CompositionStep step() {
+        return CompositionStep.root("/template").childWith("http://mock/", 0, 10);
+    }
+
+    private static Config config(final String path) {
+        return DefaultConfiguration.defaultConfiguration().getConfig(path);
+    }
+}
@@ -19,5 +19,11 @@ public class HttpCacheConfigurationTest {
             .withValue("size", ConfigValueFactory.fromAnyRef(-1)));
     }
 
+    @Test(expected = ConfigException.BadValue.class)
+    public void failsIfStalenessIsNegative() {
+        HttpCacheConfiguration.fromConfig(DefaultConfiguration.defaultConfiguration().getConfig("composer.http.cache")
+            .withValue("stale-if-error", ConfigValueFactory.fromAnyRef(-1)));
+    }
+
 
 }
@@ -7,7 +7,9 @@ import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
@@ -18,12 +20,15 @@ import org.junit.Test;
 
 import com.google.common.testing.FakeTicker;
 import com.google.inject.Provider;
+import com.rewedigital.composer.client.CircuitBreakers;
+import com.rewedigital.composer.client.CircuitBreakingClientDecorator;
 import com.spotify.apollo.Environment;
 import com.spotify.apollo.Request;
 import com.spotify.apollo.Response;
 import com.spotify.apollo.Status;
 import com.spotify.apollo.StatusType;
 import com.spotify.apollo.environment.IncomingRequestAwareClient;
+import com.spotify.metrics.core.SemanticMetricRegistry;
 import com.typesafe.config.Config;
 import com.typesafe.config.ConfigFactory;
 import com.typesafe.config.ConfigValueFactory;
@@ -86,6 +91,270 @@ public class HttpCacheTest {
         verify(client, times(2)).send(request, Optional.empty());
     }
 
+    @Test
+    public void doesNotExtendExpiryOnCacheHit() {
+        final HttpCache cache = new HttpCache(env(), ticker::read);
+        final IncomingRequestAwareClient client = aClientReturning(aResponseWith("max-age=100"));
+        final Request request = Request.forUri("/");
+
+        cache.withCaching(request, Optional.empty(), client);
+        ticker.advance(60, TimeUnit.SECONDS);
+        cache.withCaching(request, Optional.empty(), client);
+        ticker.advance(60, TimeUnit.SECONDS);
+        cache.withCaching(request, Optional.empty(), client);
+
+        verify(client, times(2)).send(request, Optional.empty());
+    }
+
+    @Test
+    public void coalescesConcurrentRequestsForSameCacheKey() throws Exception {
+        final HttpCache cache = new HttpCache(env());
+        final CompletableFuture<Response<ByteString>> upstream = new CompletableFuture<>();
+        final IncomingRequestAwareClient client = aClientAnswering(upstream);
+        final Request request = Request.forUri("/");
+
+        final CompletableFuture<Response<ByteString>> first =
+            cache.withCaching(request, Optional.empty(), client).toCompletableFuture();
+        final CompletableFuture<Response<ByteString>> second =
+            cache.withCaching(request, Optional.empty(), client).toCompletableFuture();
+        final Response<ByteString> response = aResponseWith("max-age=100");
+        upstream.complete(response);
+
+        verify(client, times(1)).send(request, Optional.empty());
+        assertThat(first.get()).isEqualTo(response);
+        assertThat(second.get()).isEqualTo(response);
+        assertThat(cache.coalescedCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void doesNotShareResponsesThatAreNotCachable() {
+        final HttpCache cache = new HttpCache(env());
+        final CompletableFuture<Response<ByteString>> upstream = new CompletableFuture<>();
+        final IncomingRequestAwareClient client = aClientAnswering(upstream);
+        final Request request = Request.forUri("/");
+
+        cache.withCaching(request, Optional.empty(), client);
+        cache.withCaching(request, Optional.empty(), client);
+        upstream.complete(aResponseWith("no-store"));
+
+        verify(client, times(2)).send(request, Optional.empty());
+    }
+
+    @Test
+    public void doesNotCoalesceRequestsWithCookies() {
+        final HttpCache cache = new HttpCache(env());
+        final IncomingRequestAwareClient client = aClientAnswering(new CompletableFuture<>());
+        final Request request = Request.forUri("/").withHeader("Cookie", "session=1");
+
+        cache.withCaching(request, Optional.empty(), client);
+        cache.withCaching(request, Optional.empty(), client);
+
+        verify(client, times(2)).send(request, Optional.empty());
+        assertThat(cache.coalescedCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void doesNotCoalesceRequestsIfLastResponseWasNotCachable() {
+        final HttpCache cache = new HttpCache(env());
+        final CompletableFuture<Response<ByteString>> pending = new CompletableFuture<>();
+        final IncomingRequestAwareClient client =
+            aClientReturning(CompletableFuture.completedFuture(aResponseWith("no-store")), pending, pending);
+        final Request request = Request.forUri("/");
+
+        cache.withCaching(request, Optional.empty(), client);
+        cache.withCaching(request, Optional.empty(), client);
+        cache.withCaching(request, Optional.empty(), client);
+
+        verify(client, times(3)).send(request, Optional.empty());
+        assertThat(cache.coalescedCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void registersCoalescedRequestsAsMetric() {
+        final HttpCache cache = new HttpCache(env());
+        final SemanticMetricRegistry registry = new SemanticMetricRegistry();
+
+        cache.registerMetrics(registry);
+
+        assertThat(registry.getGauges().keySet())
+            .anySatisfy(id -> assertThat(id.getTags()).containsEntry("what", "http-cache-coalesced-requests"));
+    }
+
+    @Test
+    public void sharesFailedRequests() {
+        final HttpCache cache = new HttpCache(env());
+        final CompletableFuture<Response<ByteString>> upstream = new CompletableFuture<>();
+        final IncomingRequestAwareClient client = aClientAnswering(upstream);
+        final Request request = Request.forUri("/");
+
+        final CompletableFuture<Response<ByteString>> first =
+            cache.withCaching(request, Optional.empty(), client).toCompletableFuture();
+        final CompletableFuture<Response<ByteString>> second =
+            cache.withCaching(request, Optional.empty(), client).toCompletableFuture();
+        upstream.completeExceptionally(new IllegalStateException());
+
+        assertThat(first).isCompletedExceptionally();
+        assertThat(second).isCompletedExceptionally();
+        verify(client, times(1)).send(request, Optional.empty());
+    }
+
+    @Test
+    public void sharesServerErrorsWithAllWaitingRequests() {
+        final HttpCache cache = new HttpCache(env());
+        final CompletableFuture<Response<ByteString>> upstream = new CompletableFuture<>();
+        final IncomingRequestAwareClient client = aClientAnswering(upstream);
+        final Request request = Request.forUri("/");
+
+        final List<CompletableFuture<Response<ByteString>>> responses = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            responses.add(cache.withCaching(request, Optional.empty(), client).toCompletableFuture());
+        }
+        final Response<ByteString> error = Response.forStatus(Status.INTERNAL_SERVER_ERROR);
+        upstream.complete(error);
+
+        verify(client, times(1)).send(request, Optional.empty());
+        assertThat(responses).allSatisfy(response -> assertThat(response).isCompletedWithValue(error));
+    }
+
+    @Test
+    public void keepsCoalescingRequestsAfterServerErrors() {
+        final HttpCache cache = new HttpCache(env());
+        final CompletableFuture<Response<ByteString>> pending = new CompletableFuture<>();
+        final IncomingRequestAwareClient client = aClientReturning(
+            CompletableFuture.completedFuture(Response.forStatus(Status.SERVICE_UNAVAILABLE)), pending);
+        final Request request = Request.forUri("/");
+
+        cache.withCaching(request, Optional.empty(), client);
+        cache.withCaching(request, Optional.empty(), client);
+        cache.withCaching(request, Optional.empty(), client);
+
+        verify(client, times(2)).send(request, Optional.empty());
+        assertThat(cache.coalescedCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void servesStaleResponseWhileRevalidating() throws Exception {
+        final HttpCache cache = new HttpCache(envWithStaleness(), ticker::read);
+        final Response<ByteString> stale = aResponseWith("max-age=100, stale-while-revalidate=50");
+        final Response<ByteString> revalidated = aResponseWith("max-age=100");
+        final IncomingRequestAwareClient client = aClientReturning(stale, revalidated);
+        final Request request = Request.forUri("/");
+
+        cache.withCaching(request, Optional.empty(), client);
+        ticker.advance(120, TimeUnit.SECONDS);
+
+        assertThat(cache.withCaching(request, Optional.empty(), client)).isCompletedWithValue(stale);
+        assertThat(cache.withCaching(request, Optional.empty(), client)).isCompletedWithValue(revalidated);
+        verify(client, times(2)).send(request, Optional.empty());
+    }
+
+    @Test
+    public void revalidatesStaleResponseOnlyOnce() {
+        final HttpCache cache = new HttpCache(envWithStaleness(), ticker::read);
+        final IncomingRequestAwareClient client = aClientReturning(
+            CompletableFuture.completedFuture(aResponseWith("max-age=100, stale-while-revalidate=50")),
+            new CompletableFuture<>());
+        final Request request = Request.forUri("/");
+
+        cache.withCaching(request, Optional.empty(), client);
+        ticker.advance(120, TimeUnit.SECONDS);
+        cache.withCaching(request, Optional.empty(), client);
+        cache.withCaching(request, Optional.empty(), client);
+
+        verify(client, times(2)).send(request, Optional.empty());
+        assertThat(cache.coalescedCount()).isZero();
+    }
+
+    @Test
+    public void revalidatesStaleResponseOnlyOnceAfterFailedRevalidation() {
+        final HttpCache cache = new HttpCache(envWithStaleness(), ticker::read);
+        final Response<ByteString> stale = aResponseWith("max-age=100, stale-while-revalidate=50");
+        final IncomingRequestAwareClient client = aClientReturning(CompletableFuture.completedFuture(stale),
+            CompletableFuture.completedFuture(Response.forStatus(Status.INTERNAL_SERVER_ERROR)),
+            new CompletableFuture<>());
+        final Request request = Request.forUri("/").withHeader("Cookie", "session=1");
+
+        cache.withCaching(request, Optional.empty(), client);
+        ticker.advance(120, TimeUnit.SECONDS);
+        cache.withCaching(request, Optional.empty(), client);
+        for (int i = 0; i < 10; i++) {
+            assertThat(cache.withCaching(request, Optional.empty(), client)).isCompletedWithValue(stale);
+        }
+
+        // the initial fetch, the failed revalidation and a single running revalidation
+        verify(client, times(3)).send(request, Optional.empty());
+    }
+
+    @Test
+    public void servesStaleResponseIfUpstreamFails() {
+        final HttpCache cache = new HttpCache(envWithStaleness(), ticker::read);
+        final Response<ByteString> stale = aResponseWith("max-age=100, stale-if-error=50");
+        final IncomingRequestAwareClient client =
+            aClientReturning(stale, Response.forStatus(Status.INTERNAL_SERVER_ERROR));
+        final Request request = Request.forUri("/");
+
+        cache.withCaching(request, Optional.empty(), client);
+        ticker.advance(120, TimeUnit.SECONDS);
+
+        assertThat(cache.withCaching(request, Optional.empty(), client)).isCompletedWithValue(stale);
+    }
+
+    @Test
+    public void servesCachedAndStaleResponsesWhileCircuitIsOpen() throws Exception {
+        final HttpCache cache = new HttpCache(envWithStaleness(), ticker::read);
+        final CircuitBreakers circuitBreakers = new CircuitBreakers(envWith(config()
+            .withValue("composer.http.circuit-breaker", ConfigValueFactory.fromMap(circuitBreakerConfig()))));
+        final Response<ByteString> cached = aResponseWith("max-age=100, stale-if-error=50");
+        final IncomingRequestAwareClient upstream = mock(IncomingRequestAwareClient.class);
+        when(upstream.send(any(), any())).thenAnswer(invocation -> CompletableFuture.completedFuture(
+            invocation.<Request>getArgument(0).uri().endsWith("/cached") ? cached
+                : Response.forStatus(Status.INTERNAL_SERVER_ERROR)));
+        final IncomingRequestAwareClient client = new CachingClientDecorator(() -> cache)
+            .apply(new CircuitBreakingClientDecorator(() -> circuitBreakers).apply(upstream));
+        final Request request = Request.forUri("http://backend/cached");
+
+        client.send(request, Optional.empty());
+        for (int i = 0; i < 2; i++) {
+            client.send(Request.forUri("http://backend/failing"), Optional.empty());
+        }
+        assertThat(circuitBreakers.state("backend")).contains(CircuitBreakers.State.OPEN);
+
+        assertThat(client.send(request, Optional.empty())).isCompletedWithValue(cached);
+        ticker.advance(120, TimeUnit.SECONDS);
+        assertThat(client.send(request, Optional.empty())).isCompletedWithValue(cached);
+        verify(upstream, times(1)).send(request, Optional.empty());
+    }
+
+    @Test
+    public void doesNotServeResponsesStaleForLongerThanAllowed() {
+        final HttpCache cache = new HttpCache(envWithStaleness(), ticker::read);
+        final Response<ByteString> error = Response.forStatus(Status.INTERNAL_SERVER_ERROR);
+        final IncomingRequestAwareClient client =
+            aClientReturning(aResponseWith("max-age=100, stale-if-error=50"), error);
+        final Request request = Request.forUri("/");
+
+        cache.withCaching(request, Optional.empty(), client);
+        ticker.advance(160, TimeUnit.SECONDS);
+
+        assertThat(cache.withCaching(request, Optional.empty(), client)).isCompletedWithValue(error);
+    }
+
+    @Test
+    public void usesConfiguredStalenessIfResponseDoesNotSpecifyIt() {
+        final HttpCache cache = new HttpCache(envWith(env().get().config()
+            .withValue("composer.http.cache.stale-if-error", ConfigValueFactory.fromAnyRef(50))
+            .withValue("composer.http.cache.max-stale", ConfigValueFactory.fromAnyRef(3600))), ticker::read);
+        final Response<ByteString> stale = aResponseWith("max-age=100");
+        final IncomingRequestAwareClient client =
+            aClientReturning(stale, Response.forStatus(Status.INTERNAL_SERVER_ERROR));
+        final Request request = Request.forUri("/");
+
+        cache.withCaching(request, Optional.empty(), client);
+        ticker.advance(120, TimeUnit.SECONDS);
+
+        assertThat(cache.withCaching(request, Optional.empty(), client)).isCompletedWithValue(stale);
+    }
+
     @Test
     public void considersQueryParametersInCacheKey() {
         final HttpCache cache = new HttpCache(env());
@@ -119,7 +388,7 @@ public class HttpCacheTest {
         final IncomingRequestAwareClient client = aClientReturning(null);
         final Request request = Request.forUri("/");
 
-        cache.withCaching(request, Optional.empty(), client);
+        assertThat(cache.withCaching(request, Optional.empty(), client)).isCompletedWithValue(null);
     }
 
     @Test
@@ -202,8 +471,31 @@ public class HttpCacheTest {
     }
 
     private IncomingRequestAwareClient aClientReturning(final Response<ByteString> response) {
+        return aClientAnswering(CompletableFuture.completedFuture(response));
+    }
+
+    @SafeVarargs
+    private final IncomingRequestAwareClient aClientReturning(final Response<ByteString> first,
+        final Response<ByteString>... further) {
+        @SuppressWarnings("unchecked")
+        final CompletableFuture<Response<ByteString>>[] furtherResponses = new CompletableFuture[further.length];
+        for (int i = 0; i < further.length; i++) {
+            furtherResponses[i] = CompletableFuture.completedFuture(further[i]);
+        }
+        return aClientReturning(CompletableFuture.completedFuture(first), furtherResponses);
+    }
+
+    @SafeVarargs
+    private final IncomingRequestAwareClient aClientReturning(final CompletableFuture<Response<ByteString>> first,
+        final CompletableFuture<Response<ByteString>>... further) {
+        final IncomingRequestAwareClient client = mock(IncomingRequestAwareClient.class);
+        when(client.send(any(), any())).thenReturn(first, further);
+        return client;
+    }
+
+    private IncomingRequestAwareClient aClientAnswering(final CompletableFuture<Response<ByteString>> response) {
         final IncomingRequestAwareClient client = mock(IncomingRequestAwareClient.class);
-        when(client.send(any(), any())).thenReturn(CompletableFuture.completedFuture(response));
+        when(client.send(any(), any())).thenReturn(response);
         return client;
     }
 
@@ -212,12 +504,29 @@ public class HttpCacheTest {
             .withValue("composer.http.cache.size", ConfigValueFactory.fromAnyRef(10_000)));
     }
 
+    private static Provider<Environment> envWithStaleness() {
+        return envWith(env().get().config().withValue("composer.http.cache.max-stale",
+            ConfigValueFactory.fromAnyRef(3600)));
+    }
+
     private static Provider<Environment> envWith(final Config config) {
         final Environment environment = mock(Environment.class);
         when(environment.config()).thenReturn(config);
         return () -> environment;
     }
 
+    private static Map<String, Object> circuitBreakerConfig() {
+        final Map<String, Object> result = new HashMap<>();
+        result.put("enabled", true);
+        result.put("window", 10_000);
+        result.put("minimum-calls", 2);
+        result.put("failure-rate", 0.5);
+        result.put("slow-call", 0);
+        result.put("open-duration", 60_000);
+        result.put("probes", 1);
+        return result;
+    }
+
     private static Config config() {
         return ConfigFactory.empty();
     }
@@ -0,0 +1,38 @@
+package com.rewedigital.composer.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+import com.rewedigital.composer.application.DefaultConfiguration;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigException;
+import com.typesafe.config.ConfigValueFactory;
+
+public class CircuitBreakerConfigurationTest {
+
+    @Test
+    public void allConfigParametersAreCoveredByDefaultConfig() {
+        final CircuitBreakerConfiguration configuration = CircuitBreakerConfiguration.fromConfig(
+            config().withValue("enabled", ConfigValueFactory.fromAnyRef(true)));
+        assertThat(configuration.enabled()).isTrue();
+    }
+
+    @Test(expected = ConfigException.BadValue.class)
+    public void failsIfFailureRateIsOutOfRange() {
+        CircuitBreakerConfiguration.fromConfig(config()
+            .withValue("enabled", ConfigValueFactory.fromAnyRef(true))
+            .withValue("failure-rate", ConfigValueFactory.fromAnyRef(1.5)));
+    }
+
+    @Test
+    public void ignoresInvalidValuesIfDisabled() {
+        final CircuitBreakerConfiguration configuration = CircuitBreakerConfiguration.fromConfig(
+            config().withValue("probes", ConfigValueFactory.fromAnyRef(0)));
+        assertThat(configuration.enabled()).isFalse();
+    }
+
+    private static Config config() {
+        return DefaultConfiguration.defaultConfiguration().getConfig("composer.http.circuit-breaker");
+    }
+}
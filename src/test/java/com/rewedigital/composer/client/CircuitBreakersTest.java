@@ -0,0 +1,226 @@
+package com.rewedigital.composer.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.codahale.metrics.Gauge;
+import com.google.common.testing.FakeTicker;
+import com.rewedigital.composer.client.CircuitBreakers.State;
+import com.spotify.apollo.Request;
+import com.spotify.apollo.Response;
+import com.spotify.apollo.Status;
+import com.spotify.apollo.environment.IncomingRequestAwareClient;
+import com.spotify.metrics.core.SemanticMetricRegistry;
+
+import okio.ByteString;
+
+public class CircuitBreakersTest {
+
+    private final FakeTicker ticker = new FakeTicker();
+    private final CircuitBreakers circuitBreakers = new CircuitBreakers(new CircuitBreakerConfiguration(true,
+        Duration.ofSeconds(10), 4, 0.5, Duration.ofSeconds(2), Duration.ofSeconds(5), 2), ticker::read);
+
+    private final Request request = Request.forUri("http://backend:8080/fragment");
+
+    @Test
+    public void passesCallsThroughWhileClosed() throws Exception {
+        final IncomingRequestAwareClient client = aClientReturning(Status.OK);
+
+        for (int i = 0; i < 10; i++) {
+            assertThat(send(client).status()).isEqualTo(Status.OK);
+        }
+
+        verify(client, times(10)).send(any(), any());
+        assertThat(circuitBreakers.state("backend:8080")).contains(State.CLOSED);
+    }
+
+    @Test
+    public void opensCircuitIfFailureRateIsExceeded() throws Exception {
+        final IncomingRequestAwareClient client = aClientReturning(Status.INTERNAL_SERVER_ERROR);
+
+        for (int i = 0; i < 4; i++) {
+            send(client);
+        }
+        final Response<ByteString> response = send(client);
+
+        assertThat(response.status()).isEqualTo(Status.SERVICE_UNAVAILABLE);
+        verify(client, times(4)).send(any(), any());
+        assertThat(circuitBreakers.state("backend:8080")).contains(State.OPEN);
+        assertThat(circuitBreakers.rejectedCount()).isEqualTo(1);
+        assertThat(circuitBreakers.openedCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void doesNotOpenCircuitBeforeMinimumNumberOfCalls() throws Exception {
+        final IncomingRequestAwareClient client = aClientReturning(Status.INTERNAL_SERVER_ERROR);
+
+        for (int i = 0; i < 3; i++) {
+            send(client);
+        }
+
+        assertThat(circuitBreakers.state("backend:8080")).contains(State.CLOSED);
+    }
+
+    @Test
+    public void countsExceptionsAndSlowCallsAsFailures() throws Exception {
+        final IncomingRequestAwareClient client = mock(IncomingRequestAwareClient.class);
+        final CompletableFuture<Response<ByteString>> failed = new CompletableFuture<>();
+        failed.completeExceptionally(new RuntimeException("timeout"));
+        final CompletableFuture<Response<ByteString>> slow = new CompletableFuture<>();
+        when(client.send(any(), any())).thenReturn(failed).thenReturn(ok()).thenReturn(slow).thenReturn(ok());
+
+        circuitBreakers.send(request, Optional.empty(), client);
+        send(client);
+        circuitBreakers.send(request, Optional.empty(), client);
+        ticker.advance(3, TimeUnit.SECONDS);
+        slow.complete(Response.forStatus(Status.OK));
+        send(client);
+
+        assertThat(circuitBreakers.state("backend:8080")).contains(State.OPEN);
+    }
+
+    @Test
+    public void forgetsFailuresOutsideOfWindow() throws Exception {
+        final IncomingRequestAwareClient client = mock(IncomingRequestAwareClient.class);
+        when(client.send(any(), any())).thenReturn(serverError()).thenReturn(serverError()).thenReturn(ok())
+            .thenReturn(ok());
+
+        send(client);
+        send(client);
+        ticker.advance(11, TimeUnit.SECONDS);
+        send(client);
+        send(client);
+
+        assertThat(circuitBreakers.state("backend:8080")).contains(State.CLOSED);
+    }
+
+    @Test
+    public void closesCircuitIfProbesSucceed() throws Exception {
+        final IncomingRequestAwareClient client = mock(IncomingRequestAwareClient.class);
+        final CompletableFuture<Response<ByteString>> firstProbe = new CompletableFuture<>();
+        final CompletableFuture<Response<ByteString>> secondProbe = new CompletableFuture<>();
+        when(client.send(any(), any())).thenReturn(serverError()).thenReturn(serverError())
+            .thenReturn(serverError()).thenReturn(serverError()).thenReturn(firstProbe).thenReturn(secondProbe)
+            .thenReturn(ok());
+        for (int i = 0; i < 4; i++) {
+            send(client);
+        }
+
+        ticker.advance(5, TimeUnit.SECONDS);
+        circuitBreakers.send(request, Optional.empty(), client);
+        circuitBreakers.send(request, Optional.empty(), client);
+        assertThat(send(client).status()).isEqualTo(Status.SERVICE_UNAVAILABLE);
+        assertThat(circuitBreakers.state("backend:8080")).contains(State.HALF_OPEN);
+
+        firstProbe.complete(Response.forStatus(Status.OK));
+        secondProbe.complete(Response.forStatus(Status.OK));
+
+        assertThat(circuitBreakers.state("backend:8080")).contains(State.CLOSED);
+        assertThat(send(client).status()).isEqualTo(Status.OK);
+    }
+
+    @Test
+    public void reopensCircuitIfProbeFails() throws Exception {
+        final IncomingRequestAwareClient client = aClientReturning(Status.INTERNAL_SERVER_ERROR);
+        for (int i = 0; i < 4; i++) {
+            send(client);
+        }
+
+        ticker.advance(5, TimeUnit.SECONDS);
+        send(client);
+
+        assertThat(circuitBreakers.state("backend:8080")).contains(State.OPEN);
+        assertThat(send(client).status()).isEqualTo(Status.SERVICE_UNAVAILABLE);
+        verify(client, times(5)).send(any(), any());
+        assertThat(circuitBreakers.openedCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void keepsCircuitsOfBackendsApart() throws Exception {
+        final IncomingRequestAwareClient client = aClientReturning(Status.INTERNAL_SERVER_ERROR);
+        for (int i = 0; i < 4; i++) {
+            send(client);
+        }
+
+        final IncomingRequestAwareClient other = aClientReturning(Status.OK);
+        final Response<ByteString> response = circuitBreakers
+            .send(Request.forUri("http://other:8080/fragment"), Optional.empty(), other)
+            .toCompletableFuture().get();
+
+        assertThat(response.status()).isEqualTo(Status.OK);
+        assertThat(circuitBreakers.states()).containsEntry("backend:8080", State.OPEN)
+            .containsEntry("other:8080", State.CLOSED);
+    }
+
+    @Test
+    public void passesCallsThroughIfDisabled() throws Exception {
+        final CircuitBreakers disabled = new CircuitBreakers(CircuitBreakerConfiguration.disabled(), ticker::read);
+        final IncomingRequestAwareClient client = aClientReturning(Status.INTERNAL_SERVER_ERROR);
+
+        for (int i = 0; i < 10; i++) {
+            disabled.send(request, Optional.empty(), client);
+        }
+
+        verify(client, times(10)).send(any(), any());
+        assertThat(disabled.states()).isEmpty();
+    }
+
+    @Test
+    public void registersStatesAndCountsAsMetrics() throws Exception {
+        final SemanticMetricRegistry registry = new SemanticMetricRegistry();
+        circuitBreakers.registerMetrics(registry);
+        final IncomingRequestAwareClient client = aClientReturning(Status.INTERNAL_SERVER_ERROR);
+
+        for (int i = 0; i < 5; i++) {
+            send(client);
+        }
+
+        assertThat(gauge(registry, "circuit-breaker-state").getValue()).isEqualTo(State.OPEN.ordinal());
+        assertThat(gauge(registry, "circuit-breaker-rejected-calls").getValue()).isEqualTo(1L);
+        assertThat(gauge(registry, "circuit-breaker-opened-circuits").getValue()).isEqualTo(1L);
+    }
+
+    @Test
+    public void doesNotRegisterMetricsIfDisabled() {
+        final CircuitBreakers disabled = new CircuitBreakers(CircuitBreakerConfiguration.disabled(), ticker::read);
+        final SemanticMetricRegistry registry = new SemanticMetricRegistry();
+
+        disabled.registerMetrics(registry);
+
+        assertThat(registry.getGauges()).isEmpty();
+    }
+
+    private static Gauge<?> gauge(final SemanticMetricRegistry registry, final String what) {
+        return registry.getGauges((id, metric) -> what.equals(id.getTags().get("what"))).values().iterator().next();
+    }
+
+    private Response<ByteString> send(final IncomingRequestAwareClient client) throws Exception {
+        return circuitBreakers.send(request, Optional.empty(), client).toCompletableFuture().get();
+    }
+
+    private static IncomingRequestAwareClient aClientReturning(final Status status) {
+        final IncomingRequestAwareClient client = mock(IncomingRequestAwareClient.class);
+        when(client.send(any(), any()))
+            .thenAnswer(invocation -> CompletableFuture.completedFuture(Response.forStatus(status)));
+        return client;
+    }
+
+    private static CompletableFuture<Response<ByteString>> ok() {
+        return CompletableFuture.completedFuture(Response.forStatus(Status.OK));
+    }
+
+    private static CompletableFuture<Response<ByteString>> serverError() {
+        return CompletableFuture.completedFuture(Response.forStatus(Status.INTERNAL_SERVER_ERROR));
+    }
+}
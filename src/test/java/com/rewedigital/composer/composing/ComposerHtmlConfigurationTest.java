@@ -21,4 +21,18 @@ public class ComposerHtmlConfigurationTest {
                 .withValue("max-recursion", ConfigValueFactory.fromAnyRef(-1)));
     }
 
+    @Test(expected = ConfigException.BadValue.class)
+    public void validatesParseCacheSizeConfiguration() {
+        ComposerHtmlConfiguration
+            .fromConfig(DefaultConfiguration.defaultConfiguration().getConfig("composer.html")
+                .withValue("parse-cache.max-bytes", ConfigValueFactory.fromAnyRef(-1)));
+    }
+
+    @Test(expected = ConfigException.BadValue.class)
+    public void validatesMaxConcurrentFetchesConfiguration() {
+        ComposerHtmlConfiguration
+            .fromConfig(DefaultConfiguration.defaultConfiguration().getConfig("composer.html")
+                .withValue("fetch.max-concurrent-per-page", ConfigValueFactory.fromAnyRef(0)));
+    }
+
 }
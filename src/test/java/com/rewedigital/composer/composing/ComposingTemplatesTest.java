@@ -6,9 +6,11 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
@@ -24,6 +26,7 @@ import org.junit.Test;
 import com.rewedigital.composer.application.ValidatingContentFetcher;
 import com.rewedigital.composer.helper.ARequest;
 import com.rewedigital.composer.html.ComposableBodyRoot;
+import com.rewedigital.composer.routing.PathTemplates;
 import com.rewedigital.composer.session.SessionRoot;
 import com.spotify.apollo.Client;
 import com.spotify.apollo.Request;
@@ -63,6 +66,25 @@ public class ComposingTemplatesTest {
         then_the_result_should_be("<head><link rel=\"stylesheet\" href=\"css/link\" />\n</head>");
     }
 
+    @Test
+    public void appends_links_to_head_of_template_only() throws Exception {
+        given_first_downstream_call_returns_in_head(
+            "<link href=\"css/link\" data-rd-options=\"include\" rel=\"stylesheet\"/>");
+        given_first_downstream_call_returns_in_body("<head></head>");
+        when_composing_a_template("<include path=\"http://mock/\"></include><head></head>");
+        then_the_result_should_be("<head></head><head><link rel=\"stylesheet\" href=\"css/link\" />\n</head>");
+    }
+
+    @Test
+    public void appends_links_included_by_several_fragments_only_once_in_order() throws Exception {
+        given_first_downstream_call_returns_in_head(link("css/a") + link("css/b"));
+        given_next_downstream_call_returns_in_head(link("css/b") + link("css/c"));
+        when_composing_a_template(
+            "<head></head><include path=\"http://mock/1\"></include><include path=\"http://mock/2\"></include>");
+        then_the_result_should_be("<head><link rel=\"stylesheet\" href=\"css/a\" />\n"
+            + "<link rel=\"stylesheet\" href=\"css/b\" />\n<link rel=\"stylesheet\" href=\"css/c\" />\n</head>");
+    }
+
     @Test
     public void removes_ccs_link_not_marked_for_include_from_downstream_response() throws Exception {
         given_first_downstream_call_returns_in_head("<link href=\"css/link\" rel=\"stylesheet\"/>");
@@ -93,6 +115,84 @@ public class ComposingTemplatesTest {
         then_the_result_should_be("first part second part");
     }
 
+    @Test
+    public void ignores_includes_after_the_content_of_downstream_response() throws Exception {
+        given_first_downstream_call_returns_in_body(
+            "first part</content><include path=\"http://other/mock/\"></include><content>ignored");
+        given_next_downstream_call_returns_in_body("should not be included");
+        when_composing_a_template("<include path=\"http://mock/\"></include>");
+        then_the_result_should_be("first part");
+        then_the_number_of_downstream_calls_should_be(1);
+    }
+
+    @Test
+    public void composes_content_of_several_includes_in_order_of_occurrence() throws Exception {
+        given_first_downstream_call_returns_in_body("first");
+        given_next_downstream_call_returns_in_body("second");
+        given_next_downstream_call_returns_in_body("third");
+        when_composing_a_template("<include path=\"http://mock/1\"></include>, "
+            + "<include path=\"http://mock/2\"></include>, <include path=\"http://mock/3\"></include>");
+        then_the_result_should_be("first, second, third");
+    }
+
+    @Test
+    public void fetches_identical_includes_only_once() throws Exception {
+        given_first_downstream_call_returns_in_body("content");
+        when_composing_a_template(
+            "<include path=\"http://mock/\"></include> and <include path=\"http://mock/\"></include>");
+        then_the_result_should_be("content and content");
+        then_the_number_of_downstream_calls_should_be(1);
+    }
+
+    @Test
+    public void fetches_identical_includes_with_different_ttl_separately() throws Exception {
+        given_first_downstream_call_returns_in_body("content");
+        given_next_downstream_call_returns_in_body("content");
+        when_composing_a_template("<include ttl=\"500\" path=\"http://mock/\"></include> and "
+            + "<include ttl=\"100\" path=\"http://mock/\"></include>");
+        then_the_result_should_be("content and content");
+        then_the_number_of_downstream_calls_should_be(2);
+        then_the_downstream_call_should_be_made_with(ARequest.matching("http://mock/", 500));
+        then_the_downstream_call_should_be_made_with(ARequest.matching("http://mock/", 100));
+    }
+
+    @Test
+    public void traces_fetches_of_includes_with_their_call_stack() throws Exception {
+        given_first_downstream_call_returns_in_body("first part <include path=\"http://mock/b\"></include>");
+        given_next_downstream_call_returns_in_body("second part");
+        when_composing_a_template(
+            "<include path=\"http://mock/a\"></include> and <include path=\"http://mock/a\"></include>");
+        then_the_trace_should_contain("fetched=2 shared=2");
+        then_the_slowest_fetches_should_contain(
+            "[http://mock/b] included via [http://mock/a] included via [template-path]");
+    }
+
+    @Test
+    public void fetches_identical_includes_on_different_levels_of_recursion_only_once() throws Exception {
+        given_first_downstream_call_returns_in_body("first part <include path=\"http://mock/b\"></include>");
+        given_next_downstream_call_returns_in_body("second part");
+        when_composing_a_template(
+            "<include path=\"http://mock/a\"></include> and <include path=\"http://mock/b\"></include>");
+        then_the_result_should_be("first part second part and second part");
+        then_the_number_of_downstream_calls_should_be(2);
+    }
+
+    @Test
+    public void composes_content_into_large_template() throws Exception {
+        final String padding = String.join("", Collections.nCopies(2_000, "<p>padding</p>"));
+        given_first_downstream_call_returns_in_body("content");
+        when_composing_a_template(padding + "<include path=\"http://mock/\"></include> more content");
+        then_the_result_should_be(padding + "content more content");
+    }
+
+    @Test
+    public void composes_non_ascii_content_into_non_ascii_template() throws Exception {
+        given_first_downstream_call_returns_in_body("Äpfel & Birnen 🍐");
+        when_composing_a_template("<head><title>Über uns €</title></head>größer 🍏 "
+            + "<include path=\"http://mock/\"></include> & mehr");
+        then_the_result_should_be("<head><title>Über uns €</title>\n</head>größer 🍏 Äpfel & Birnen 🍐 & mehr");
+    }
+
     @Test
     public void uses_fallback_from_template_if_downstream_call_returns_with_error() throws Exception {
         given_first_downstream_call_returns_status(Status.BAD_REQUEST);
@@ -101,6 +201,14 @@ public class ComposingTemplatesTest {
         then_the_result_should_be("template content <div>default content</div>");
     }
 
+    @Test
+    public void uses_fallback_sliced_from_template_as_is() throws Exception {
+        given_first_downstream_call_returns_status(Status.BAD_REQUEST);
+        when_composing_a_template("Vorlage ü <include ttl=\"100\"  path=\"http://mock/?a>b\" ><content>"
+            + "<div class=\"ä\" >  Ersatz 🍏</div ></content></include> mehr");
+        then_the_result_should_be("Vorlage ü <div class=\"ä\" >  Ersatz 🍏</div > mehr");
+    }
+
     @Test
     public void uses_fallback_from_template_if_downstream_call_does_not_return_html() throws Exception {
         given_first_downstream_call_returns_content_type("text/json");
@@ -134,6 +242,31 @@ public class ComposingTemplatesTest {
         then_the_downstream_call_should_be_made_with(ARequest.matching("http://mock/", Optional.empty()));
     }
 
+    @Test
+    public void keeps_ttl_from_include_if_it_is_within_budget_of_page() throws Exception {
+        given_a_page_budget_of(Duration.ofMinutes(1));
+        when_composing_a_template("template content <include ttl=\"500\" path=\"http://mock/\"></include>");
+        then_the_downstream_call_should_be_made_with(ARequest.matching("http://mock/", 500));
+    }
+
+    @Test
+    public void limits_timeout_of_downstream_calls_to_remaining_budget_of_page() throws Exception {
+        given_a_page_budget_of(Duration.ofMinutes(1));
+        when_composing_a_template("template content <include path=\"http://mock/\"></include>");
+        then_the_downstream_call_should_be_made_with(
+            request -> request.ttl().filter(ttl -> ttl.compareTo(Duration.ofMinutes(1)) <= 0).isPresent());
+    }
+
+    @Test
+    public void uses_fallback_without_downstream_call_if_budget_of_page_is_exhausted() throws Exception {
+        given_a_page_budget_of(Duration.ZERO);
+        given_first_downstream_call_returns_in_body("should not be included");
+        when_composing_a_template("template content <include path=\"http://mock/\"><content>"
+            + "<div>default content</div></content></include>");
+        then_the_result_should_be("template content <div>default content</div>");
+        then_the_number_of_downstream_calls_should_be(0);
+    }
+
     @Test
     public void composes_session_along_with_template_from_downstream_response_headers() throws Exception {
         given_first_downstream_call_returns_header("x-rd-session-key-content", "session-val-content");
@@ -146,7 +279,7 @@ public class ComposingTemplatesTest {
 
     private Client client;
     private Composer newComposer;
-    private Response<String> response;
+    private Response<ComposablePayload> response;
     private SessionRoot session;
     private String downstreamBodyContent = "";
     private String downstreamHeadContent = "";
@@ -155,6 +288,8 @@ public class ComposingTemplatesTest {
     private Status downstreamStatus = Status.OK;
     private int maxRecursionDepth = 10;
     private String downstreamContentType = "text/html";
+    private Optional<Duration> pageBudget = Optional.empty();
+    private final Trace trace = Trace.start(10);
 
     private void given_first_downstream_call_returns_in_body(final String bodyContent) {
         downstreamBodyContent = bodyContent;
@@ -168,6 +303,14 @@ public class ComposingTemplatesTest {
         furtherDownstreamResponses.add(completedFuture(contentResponse(Status.OK, bodyContent, "", "text/html")));
     }
 
+    private void given_next_downstream_call_returns_in_head(final String headContent) {
+        furtherDownstreamResponses.add(completedFuture(contentResponse(Status.OK, "", headContent, "text/html")));
+    }
+
+    private static String link(final String href) {
+        return "<link href=\"" + href + "\" data-rd-options=\"include\" rel=\"stylesheet\"/>";
+    }
+
     private void given_first_downstream_call_returns_status(final Status status) {
         downstreamStatus = status;
     }
@@ -180,35 +323,48 @@ public class ComposingTemplatesTest {
         maxRecursionDepth = recursionDepth;
     }
 
+    private void given_a_page_budget_of(final Duration budget) {
+        pageBudget = Optional.of(budget);
+    }
+
     private void given_first_downstream_call_returns_content_type(final String contentType) {
         downstreamContentType = contentType;
     }
 
     private void when_composing_a_template(final String template) throws Exception {
         final String body = template;
-        when_composing_a_template(Response.forPayload(body));
+        when_composing_a_template(Response.forPayload(ComposablePayload.ofUtf8(body)));
     }
 
     private void when_composing_a_template(final String template, final String headerKey, final String headerValue)
         throws Exception {
         final String body = template;
-        when_composing_a_template(Response.forPayload(body).withHeader(headerKey, headerValue));
+        when_composing_a_template(
+            Response.forPayload(ComposablePayload.ofUtf8(body)).withHeader(headerKey, headerValue));
     }
 
-    private void when_composing_a_template(final Response<String> template) throws Exception {
+    private void when_composing_a_template(final Response<ComposablePayload> template) throws Exception {
         client = makeClient();
         newComposer = makeNewComposer(client, template);
-        final ComposingResponse<String> result = newComposer.composeTemplate().get();
+        final ComposingResponse<ComposablePayload> result = newComposer.composeTemplate().get();
         response = result.composedResponse();
         session = result.getComposition(SessionRoot.class).get();
     }
 
+    private void then_the_trace_should_contain(final String timings) {
+        assertThat(trace.summarize(0).toString()).contains(timings);
+    }
+
+    private void then_the_slowest_fetches_should_contain(final String callStack) {
+        assertThat(trace.summarize(3).slowest()).anySatisfy(fetch -> assertThat(fetch).startsWith(callStack));
+    }
+
     private void then_the_result_should_be(final String bodyContent) {
-        assertThat(response.payload()).contains(bodyContent);
+        assertThat(response.payload().map(ComposablePayload::utf8)).contains(bodyContent);
     }
 
     private void then_the_result_should_not_contain(final String value) {
-        assertThat(response.payload()).doesNotHave(
+        assertThat(response.payload().map(ComposablePayload::utf8)).doesNotHave(
             new Condition<>(v -> v.isPresent() && v.get().contains(value), "value containing %s", value));
     }
 
@@ -216,6 +372,10 @@ public class ComposingTemplatesTest {
         verify(client).send(argThat(matcher));
     }
 
+    private void then_the_number_of_downstream_calls_should_be(final int calls) {
+        verify(client, times(calls)).send(any());
+    }
+
     private void then_the_session_should_contain(final String sessionKey, final String sessionValue) {
         assertThat(session.get(sessionKey)).contains(sessionValue);
     }
@@ -224,16 +384,19 @@ public class ComposingTemplatesTest {
         assertThat(session.isDirty()).isTrue();
     }
 
-    private Composer makeNewComposer(final Client client, final Response<String> template) {
+    private Composer makeNewComposer(final Client client, final Response<ComposablePayload> template) {
         final ComposerHtmlConfiguration configuration = new ComposerHtmlConfiguration("include", "content",
             "data-rd-options", maxRecursionDepth);
         final ResponseComposition responseComposition = ResponseComposition
             .of(Arrays.asList(ComposableBodyRoot.of(configuration), SessionRoot.empty()));
-        final ComposingResponse<String> composingResponse = ComposingResponse.of(template, responseComposition);
+        final ComposingResponse<ComposablePayload> composingResponse =
+            ComposingResponse.of(template, responseComposition);
         final ContentFetcher contentFetcher = new ValidatingContentFetcher(client, Collections.emptyMap(),
             responseComposition,
-            configuration.maxRecursion());
-        return new Composer(contentFetcher, composingResponse, "template-path");
+            configuration.maxRecursion(), PathTemplates.create(10), FetchScheduler.unlimited().page(10),
+            Hedging.disabled());
+        return new Composer(contentFetcher, composingResponse, "template-path", Deadline.after(pageBudget),
+            trace);
     }
 
     private Client makeClient() {
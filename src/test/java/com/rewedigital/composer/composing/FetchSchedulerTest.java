@@ -0,0 +1,108 @@
+package com.rewedigital.composer.composing;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+import org.junit.Test;
+
+public class FetchSchedulerTest {
+
+    private final List<String> started = new ArrayList<>();
+    private final List<CompletableFuture<String>> running = new ArrayList<>();
+
+    @Test
+    public void limitsConcurrentFetchesPerPage() {
+        final FetchScheduler.Page page = FetchScheduler.unlimited().page(2);
+
+        final CompletableFuture<String> first = page.schedule(include(0), fetch("first"));
+        page.schedule(include(10), fetch("second"));
+        page.schedule(include(20), fetch("third"));
+        assertThat(started).containsExactly("first", "second");
+
+        complete("first");
+        assertThat(first).isCompletedWithValue("first");
+        assertThat(started).containsExactly("first", "second", "third");
+    }
+
+    @Test
+    public void limitsConcurrentFetchesOfAllPages() {
+        final FetchScheduler scheduler = FetchScheduler.create(2);
+        final FetchScheduler.Page page = scheduler.page(2);
+        final FetchScheduler.Page otherPage = scheduler.page(2);
+
+        page.schedule(include(0), fetch("first"));
+        page.schedule(include(10), fetch("second"));
+        otherPage.schedule(include(0), fetch("other"));
+        assertThat(started).containsExactly("first", "second");
+
+        complete("second");
+        assertThat(started).containsExactly("first", "second", "other");
+    }
+
+    @Test
+    public void startsQueuedFetchesByDepthAndDocumentOrder() {
+        final FetchScheduler.Page page = FetchScheduler.unlimited().page(1);
+
+        page.schedule(include(0), fetch("running"));
+        page.schedule(include(30), fetch("bottom"));
+        page.schedule(include(0).childWith("/nested", 5, 10), fetch("nested"));
+        page.schedule(include(10), fetch("top"));
+
+        complete("running");
+        complete("top");
+        complete("bottom");
+        assertThat(started).containsExactly("running", "top", "bottom", "nested");
+    }
+
+    @Test
+    public void releasesSlotOfFailedFetch() {
+        final FetchScheduler.Page page = FetchScheduler.unlimited().page(1);
+
+        final CompletableFuture<String> failed = page.schedule(include(0), () -> {
+            throw new IllegalStateException();
+        });
+        page.schedule(include(10), fetch("next"));
+
+        assertThat(failed).isCompletedExceptionally();
+        assertThat(started).containsExactly("next");
+    }
+
+    @Test
+    public void startsSynchronouslyCompletingFetchesWithoutRecursion() {
+        final FetchScheduler.Page page = FetchScheduler.create(1).page(1);
+        final List<Integer> stackDepths = new ArrayList<>();
+
+        page.schedule(include(0), fetch("running"));
+        for (int i = 0; i < 500; i++) {
+            page.schedule(include(i + 1), () -> {
+                stackDepths.add(Thread.currentThread().getStackTrace().length);
+                return CompletableFuture.completedFuture("completed");
+            });
+        }
+        complete("running");
+
+        assertThat(stackDepths).hasSize(500);
+        assertThat(stackDepths.get(stackDepths.size() - 1)).isEqualTo(stackDepths.get(0));
+    }
+
+    private static CompositionStep include(final int offset) {
+        return CompositionStep.root("/template").childWith("/include", offset, offset + 5);
+    }
+
+    private Supplier<CompletableFuture<String>> fetch(final String name) {
+        return () -> {
+            final CompletableFuture<String> result = new CompletableFuture<>();
+            started.add(name);
+            running.add(result);
+            return result;
+        };
+    }
+
+    private void complete(final String name) {
+        running.get(started.indexOf(name)).complete(name);
+    }
+}
@@ -0,0 +1,36 @@
+package com.rewedigital.composer.composing;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+import com.rewedigital.composer.application.DefaultConfiguration;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigException;
+import com.typesafe.config.ConfigValueFactory;
+
+public class HedgingConfigurationTest {
+
+    @Test
+    public void isDisabledByDefault() {
+        assertThat(HedgingConfiguration.fromConfig(config()).enabled()).isFalse();
+    }
+
+    @Test
+    public void readsDefaultConfigurationIfEnabled() {
+        final HedgingConfiguration configuration =
+            HedgingConfiguration.fromConfig(config().withValue("enabled", ConfigValueFactory.fromAnyRef(true)));
+        assertThat(configuration.enabled()).isTrue();
+    }
+
+    @Test(expected = ConfigException.BadValue.class)
+    public void validatesMaxRatioConfiguration() {
+        HedgingConfiguration.fromConfig(config()
+            .withValue("enabled", ConfigValueFactory.fromAnyRef(true))
+            .withValue("max-ratio", ConfigValueFactory.fromAnyRef(2)));
+    }
+
+    private static Config config() {
+        return DefaultConfiguration.defaultConfiguration().getConfig("composer.html.fetch.hedging");
+    }
+}
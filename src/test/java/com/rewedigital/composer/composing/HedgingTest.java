@@ -0,0 +1,84 @@
+package com.rewedigital.composer.composing;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.junit.Test;
+
+public class HedgingTest {
+
+    private final List<CompletableFuture<String>> sent = new CopyOnWriteArrayList<>();
+
+    @Test
+    public void usesHedgedRequestIfItAnswersFirst() throws Exception {
+        final Hedging hedging = hedging(Duration.ofMillis(1), 1);
+
+        final CompletableFuture<String> result = hedging.send("/include", request(), () -> true);
+        awaitSent(2);
+        sent.get(1).complete("hedged");
+
+        assertThat(result.get(1, TimeUnit.SECONDS)).isEqualTo("hedged");
+        assertThat(sent.get(0)).isCancelled();
+        assertThat(hedging.hedgedCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void doesNotHedgeRequestsAnsweringWithinDelay() throws Exception {
+        final Hedging hedging = hedging(Duration.ofMinutes(1), 1);
+
+        final CompletableFuture<String> result = hedging.send("/include", request(), () -> true);
+        sent.get(0).complete("first");
+
+        assertThat(result.get(1, TimeUnit.SECONDS)).isEqualTo("first");
+        assertThat(sent).hasSize(1);
+    }
+
+    @Test
+    public void limitsRatioOfHedgedRequests() throws Exception {
+        final Hedging hedging = hedging(Duration.ofMillis(1), 0.5);
+
+        hedging.send("/include", request(), () -> true);
+        Thread.sleep(100);
+        assertThat(sent).hasSize(1);
+
+        hedging.send("/include", request(), () -> true);
+        awaitSent(3);
+        assertThat(hedging.hedgedCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void doesNotHedgeIfNotAllowed() throws Exception {
+        final Hedging hedging = hedging(Duration.ofMillis(1), 1);
+
+        hedging.send("/include", request(), () -> false);
+        Thread.sleep(100);
+
+        assertThat(sent).hasSize(1);
+    }
+
+    private static Hedging hedging(final Duration delay, final double maxRatio) {
+        return Hedging.create(new HedgingConfiguration(true, delay, 95, maxRatio));
+    }
+
+    private Supplier<CompletableFuture<String>> request() {
+        return () -> {
+            final CompletableFuture<String> result = new CompletableFuture<>();
+            sent.add(result);
+            return result;
+        };
+    }
+
+    private void awaitSent(final int requests) throws InterruptedException {
+        final long timeout = System.currentTimeMillis() + 1_000;
+        while (sent.size() < requests && System.currentTimeMillis() < timeout) {
+            Thread.sleep(1);
+        }
+        assertThat(sent).hasSize(requests);
+    }
+}
@@ -0,0 +1,62 @@
+package com.rewedigital.composer.composing;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Collections;
+
+import org.junit.Test;
+
+import com.rewedigital.composer.session.SessionFragment;
+import com.rewedigital.composer.session.SessionRoot;
+import com.spotify.apollo.Response;
+
+public class ResponseCompositionTest {
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsRootsOfSameType() {
+        ResponseComposition.of(asList(SessionRoot.empty(), SessionRoot.empty()));
+    }
+
+    @Test
+    public void composesFragmentsIntoTheSlotsOfTheRoots() {
+        final ResponseComposition composition = ResponseComposition.of(asList(SessionRoot.empty()));
+        final ResponseCompositionFragment fragment = composition
+            .fragmentFor(responseWithSession("x-rd-first", "1"), CompositionStep.root("/"))
+            .builder()
+            .add(composition.fragmentFor(responseWithSession("x-rd-second", "2"), CompositionStep.root("/")))
+            .add(composition.fragmentFor(responseWithSession("x-rd-first", "3"), CompositionStep.root("/")))
+            .build();
+
+        final SessionRoot session = composition.composedWith(fragment).get(SessionRoot.class).get();
+        assertThat(session.get("first")).contains("3");
+        assertThat(session.get("second")).contains("2");
+    }
+
+    @Test
+    public void looksUpComposablesOfFragmentsByTheirTypeAndSuperTypes() {
+        final ResponseComposition composition = ResponseComposition.of(asList(SessionRoot.empty()));
+        final ResponseCompositionFragment fragment =
+            composition.fragmentFor(responseWithSession("x-rd-first", "1"), CompositionStep.root("/"));
+
+        final Composable<?> session = fragment.slot(0);
+
+        assertThat(fragment.get(SessionFragment.class)).hasValueSatisfying(s -> assertThat(s).isSameAs(session));
+        assertThat(fragment.get(Composable.class)).hasValueSatisfying(c -> assertThat(c).isSameAs(session));
+        assertThat(fragment.get(FragmentSource.class)).isEmpty();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsFragmentsOfOtherCompositions() {
+        final ResponseComposition composition = ResponseComposition.of(asList(SessionRoot.empty()));
+        final ResponseComposition other = ResponseComposition.of(Collections.emptyList());
+
+        composition.fragmentFor(Response.ok(), CompositionStep.root("/"))
+            .builder()
+            .add(other.fragmentFor(Response.ok(), CompositionStep.root("/")));
+    }
+
+    private static Response<String> responseWithSession(final String header, final String value) {
+        return Response.<String>ok().withHeader(header, value);
+    }
+}
@@ -0,0 +1,82 @@
+package com.rewedigital.composer.composing;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+public class TraceTest {
+
+    @Test
+    public void aggregatesTimingsOfSteps() {
+        final Trace trace = Trace.start(10);
+        final CompositionStep root = CompositionStep.root("/", Deadline.none(), trace);
+        final CompositionStep include = root.childWith("/include", 0, 10);
+        final CompositionStep shared = root.childWith("/include", 20, 30);
+
+        include.record(Trace.Event.FETCH_START);
+        include.record(Trace.Event.FETCH_END);
+        shared.record(Trace.Event.FETCH_SHARED);
+        root.record(Trace.Event.PARSE_CACHE_HIT);
+        include.record(Trace.Event.PARSE_CACHE_MISS);
+
+        assertThat(trace.summarize(3).toString())
+            .contains("fetched=1 shared=1")
+            .contains("parsed=1 cached=1")
+            .contains("steps=3 traced=3");
+    }
+
+    @Test
+    public void keepsSlowestFetchesInOrder() throws Exception {
+        final Trace trace = Trace.start(10);
+        final CompositionStep root = CompositionStep.root("/", Deadline.none(), trace);
+        final CompositionStep fast = root.childWith("/fast", 0, 10);
+        final CompositionStep slow = root.childWith("/slow", 10, 20);
+        final CompositionStep slower = root.childWith("/slower", 20, 30);
+
+        slower.record(Trace.Event.FETCH_START);
+        slow.record(Trace.Event.FETCH_START);
+        Thread.sleep(2);
+        slow.record(Trace.Event.FETCH_END);
+        fast.record(Trace.Event.FETCH_START);
+        fast.record(Trace.Event.FETCH_END);
+        Thread.sleep(2);
+        slower.record(Trace.Event.FETCH_END);
+
+        assertThat(trace.summarize(2).slowest()).hasSize(2)
+            .satisfies(slowest -> assertThat(slowest.get(0)).startsWith("[/slower]"))
+            .satisfies(slowest -> assertThat(slowest.get(1)).startsWith("[/slow]"));
+    }
+
+    @Test
+    public void countsButDoesNotTraceStepsBeyondCapacity() {
+        final Trace trace = Trace.start(1);
+        final CompositionStep root = CompositionStep.root("/", Deadline.none(), trace);
+        final CompositionStep include = root.childWith("/include", 0, 10);
+
+        include.record(Trace.Event.FETCH_START);
+        include.record(Trace.Event.FETCH_END);
+
+        assertThat(include.recorded(Trace.Event.FETCH_END)).isFalse();
+        assertThat(trace.summarize(3).toString()).contains("fetched=0").contains("steps=2 traced=1");
+    }
+
+    @Test
+    public void recordsNothingIfDisabled() {
+        final CompositionStep step = CompositionStep.root("/");
+
+        step.record(Trace.Event.FETCH_START);
+
+        assertThat(step.recorded(Trace.Event.FETCH_START)).isFalse();
+        assertThat(Trace.disabled().isEnabled()).isFalse();
+    }
+
+    @Test
+    public void rendersServerTimingHeader() {
+        final Trace trace = Trace.start(10);
+        trace.templateFetched();
+
+        assertThat(trace.summarize(0).serverTiming())
+            .matches("template;dur=\\d+\\.\\d, includes;dur=0\\.0;desc=\"0 fetched, 0 shared\", "
+                + "parse;dur=0\\.0;desc=\"0 parsed, 0 cached\", compose;dur=0\\.0, total;dur=\\d+\\.\\d");
+    }
+}
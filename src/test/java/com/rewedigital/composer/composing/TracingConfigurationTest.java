@@ -0,0 +1,36 @@
+package com.rewedigital.composer.composing;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+import com.rewedigital.composer.application.DefaultConfiguration;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigException;
+import com.typesafe.config.ConfigValueFactory;
+
+public class TracingConfigurationTest {
+
+    @Test
+    public void tracesWithoutServerTimingByDefault() {
+        final TracingConfiguration configuration = TracingConfiguration.fromConfig(config());
+        assertThat(configuration.enabled()).isTrue();
+        assertThat(configuration.serverTiming()).isFalse();
+    }
+
+    @Test(expected = ConfigException.BadValue.class)
+    public void validatesMaxStepsConfiguration() {
+        TracingConfiguration.fromConfig(config().withValue("max-steps", ConfigValueFactory.fromAnyRef(0)));
+    }
+
+    @Test
+    public void tracesNothingIfDisabled() {
+        final Tracing tracing = Tracing.create(
+            TracingConfiguration.fromConfig(config().withValue("enabled", ConfigValueFactory.fromAnyRef(false))));
+        assertThat(tracing.start().isEnabled()).isFalse();
+    }
+
+    private static Config config() {
+        return DefaultConfiguration.defaultConfiguration().getConfig("composer.html.trace");
+    }
+}
@@ -0,0 +1,30 @@
+package com.rewedigital.composer.html;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+import okio.ByteString;
+
+public class BodySegmentsTest {
+
+    @Test
+    public void rendersSlicesOfAllSegmentsInOrder() {
+        final ByteString template = ByteString.encodeUtf8("<body><include/></body>");
+        final ByteString content = ByteString.encodeUtf8("<content>fragment</content>");
+
+        final ByteString rendered = new BodySegments()
+            .add(template, 0, 6)
+            .add(content, 9, 17)
+            .add(template, 16, 16)
+            .add(template, 16, template.size())
+            .render();
+
+        assertThat(rendered.utf8()).isEqualTo("<body>fragment</body>");
+    }
+
+    @Test
+    public void rendersEmptyBody() {
+        assertThat(new BodySegments().render()).isEqualTo(ByteString.EMPTY);
+    }
+}
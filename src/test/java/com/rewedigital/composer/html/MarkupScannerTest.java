@@ -0,0 +1,67 @@
+package com.rewedigital.composer.html;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Optional;
+
+import org.junit.Test;
+
+import com.rewedigital.composer.application.DefaultConfiguration;
+import com.rewedigital.composer.composing.ComposerHtmlConfiguration;
+
+import okio.ByteString;
+
+public class MarkupScannerTest {
+
+    private final ComposerHtmlConfiguration configuration = ComposerHtmlConfiguration
+        .fromConfig(DefaultConfiguration.defaultConfiguration().getConfig("composer.html"));
+    private final MarkupScanner scanner = new MarkupScanner(configuration);
+
+    @Test
+    public void uses_default_range_for_markup_without_content_tag() {
+        final String markup = "<html><head></head><body>some markup</body></html>";
+        then_the_scan_matches_the_parser(markup, ContentRange.allUpToo(markup.length()));
+        then_the_scan_matches_the_parser(markup, ContentRange.empty());
+    }
+
+    @Test
+    public void slices_out_content_range() {
+        then_the_scan_matches_the_parser(
+            "<html><head></head><body><rewe-digital-content><div>content</div></rewe-digital-content></body></html>",
+            ContentRange.empty());
+    }
+
+    @Test
+    public void parses_markup_containing_includes() {
+        then_markup_needs_parsing("<rewe-digital-content><rewe-digital-include path=\"/\"></rewe-digital-include>"
+            + "</rewe-digital-content>");
+    }
+
+    @Test
+    public void parses_markup_containing_assets() {
+        then_markup_needs_parsing("<head><link href=\"css/link\" data-rd-options=\"include\"/></head>");
+    }
+
+    @Test
+    public void parses_markup_with_unusual_content_tags() {
+        then_markup_needs_parsing("<rewe-digital-content class=\"x\">content</rewe-digital-content>");
+        then_markup_needs_parsing("<rewe-digital-content><rewe-digital-content>content</rewe-digital-content>");
+        then_markup_needs_parsing("<!-- <rewe-digital-content> --><rewe-digital-content>content</rewe-digital-content>");
+        then_markup_needs_parsing("<rewe-digital-content>content");
+    }
+
+    private void then_the_scan_matches_the_parser(final String markup, final ContentRange defaultContentRange) {
+        final Optional<ParsedTemplate> scanned = scanner.scan(ByteString.encodeUtf8(markup), defaultContentRange);
+        final Utf8Markup decoded = Utf8Markup.decode(ByteString.encodeUtf8(markup));
+        final IncludeMarkupHandler handler = new IncludeMarkupHandler(defaultContentRange, configuration, decoded);
+        Parser.PARSER.parse(decoded, handler);
+
+        assertThat(scanned).isPresent();
+        assertThat(scanned.get().contentRange()).isEqualTo(handler.contentRange());
+        assertThat(scanned.get().headEnd()).isEqualTo(handler.result().headEnd());
+    }
+
+    private void then_markup_needs_parsing(final String markup) {
+        assertThat(scanner.scan(ByteString.encodeUtf8(markup), ContentRange.empty())).isEmpty();
+    }
+}
@@ -0,0 +1,86 @@
+package com.rewedigital.composer.html;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+import com.codahale.metrics.Gauge;
+import com.rewedigital.composer.application.DefaultConfiguration;
+import com.rewedigital.composer.composing.ComposablePayload;
+import com.rewedigital.composer.composing.ComposerHtmlConfiguration;
+import com.rewedigital.composer.composing.CompositionStep;
+import com.spotify.apollo.Response;
+import com.spotify.metrics.core.SemanticMetricRegistry;
+
+public class ParseCacheTest {
+
+    private final ComposerHtmlConfiguration configuration = ComposerHtmlConfiguration
+        .fromConfig(DefaultConfiguration.defaultConfiguration().getConfig("composer.html"));
+    private final ParseCache cache = ParseCache.create(configuration);
+
+    @Test
+    public void parses_identical_markup_only_once() {
+        final String template = "<html><head></head><body><rewe-digital-include path=\"http://mock/\">"
+            + "</rewe-digital-include></body></html>";
+
+        final ComposableBody first = composableFor(new String(template), CompositionStep.root("/"));
+        final ComposableBody second = composableFor(new String(template), CompositionStep.root("/"));
+
+        assertThat(cache.missCount()).isEqualTo(1);
+        assertThat(cache.hitCount()).isEqualTo(1);
+        assertThat(second.includedFragments()).isEqualTo(first.includedFragments());
+    }
+
+    @Test
+    public void distinguishes_templates_from_content_fragments() {
+        final String markup = "<rewe-digital-content><rewe-digital-include path=\"http://mock/\">"
+            + "</rewe-digital-include></rewe-digital-content>";
+
+        composableFor(markup, CompositionStep.root("/"));
+        composableFor(markup, CompositionStep.root("/").childWith("/", 0, 0));
+
+        assertThat(cache.missCount()).isEqualTo(2);
+        assertThat(cache.hitCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void looks_up_markup_before_scanning_it() {
+        final String markup = "<rewe-digital-content><div>content</div></rewe-digital-content>";
+
+        final ComposableBody first = composableFor(markup, CompositionStep.root("/").childWith("/", 0, 0));
+        final ComposableBody second = composableFor(markup, CompositionStep.root("/").childWith("/", 0, 0));
+
+        assertThat(cache.missCount()).isEqualTo(1);
+        assertThat(cache.hitCount()).isEqualTo(1);
+        assertThat(second.includedFragments()).isEqualTo(first.includedFragments());
+    }
+
+    @Test
+    public void parses_every_time_if_disabled() {
+        final ParseCache disabled = ParseCache.disabled();
+        ComposableBodyRoot.of(configuration, disabled).composableFor(Response.forPayload(ComposablePayload.ofUtf8("markup")),
+            CompositionStep.root("/"));
+
+        assertThat(disabled.missCount()).isEqualTo(0);
+        assertThat(disabled.hitCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void registers_hits_and_misses_as_metrics() {
+        final SemanticMetricRegistry registry = new SemanticMetricRegistry();
+        cache.registerMetrics(registry);
+
+        final String markup = "<rewe-digital-include path=\"http://mock/\"></rewe-digital-include>";
+        composableFor(markup, CompositionStep.root("/"));
+        composableFor(markup, CompositionStep.root("/"));
+
+        assertThat(registry.getGauges().values()).extracting(Gauge::getValue).containsOnly(1L);
+        assertThat(registry.getGauges().keySet()).extracting(id -> id.getTags().get("what"))
+            .containsExactlyInAnyOrder("parse-cache-hits", "parse-cache-misses");
+    }
+
+    private ComposableBody composableFor(final String markup, final CompositionStep step) {
+        return ComposableBodyRoot.of(configuration, cache).composableFor(Response.forPayload(ComposablePayload.ofUtf8(markup)),
+            step);
+    }
+}
@@ -0,0 +1,64 @@
+package com.rewedigital.composer.routing;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import com.damnhandy.uri.template.MalformedUriTemplateException;
+
+public class PathTemplateTest {
+
+    @Test
+    public void expandsTemplateExpressions() {
+        final PathTemplate template = PathTemplate.of("http://test.com/{someValue}{?query}");
+
+        assertThat(template.expand(Collections.singletonMap("someValue", "123"))).isEqualTo("http://test.com/123");
+        assertThat(template.expand(Collections.singletonMap("someValue", "456"))).isEqualTo("http://test.com/456");
+    }
+
+    @Test
+    public void expandsTemplateConcurrently() throws Exception {
+        final PathTemplate template = PathTemplate.of("http://test.com/{someValue}");
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < 1_000; i++) {
+                final String value = Integer.toString(i);
+                results.add(executor.submit(() -> template.expand(Collections.singletonMap("someValue", value))
+                    .equals("http://test.com/" + value)));
+            }
+            for (final Future<Boolean> result : results) {
+                assertThat(result.get()).isTrue();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test(expected = MalformedUriTemplateException.class)
+    public void rejectsMalformedTemplates() {
+        PathTemplate.of("http://test.com/{someValue");
+    }
+
+    @Test
+    public void returnsPathWithoutExpressionsAsItIs() {
+        final PathTemplate template = PathTemplate.of("http://test.com/path?a=b");
+
+        assertThat(template.expand(Collections.singletonMap("someValue", "123")))
+            .isEqualTo("http://test.com/path?a=b");
+    }
+
+    @Test
+    public void cachesCompiledTemplates() {
+        final PathTemplates templates = PathTemplates.create(10);
+
+        assertThat(templates.get("http://test.com/{someValue}")).isSameAs(templates.get("http://test.com/{someValue}"));
+    }
+}
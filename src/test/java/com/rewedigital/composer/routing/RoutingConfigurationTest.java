@@ -56,6 +56,18 @@ public class RoutingConfigurationTest {
         });
     }
 
+    @Test
+    public void setsBudgetIfConfigured() {
+        final Map<String, Object> route =
+            localRoute("/test/path/<arg>", "GET", "https://target.service/{arg}", withTtl, RouteTypeName.TEMPLATE);
+        route.put("budget", 1000);
+        final RoutingConfiguration configuration = RoutingConfiguration.fromConfig(configWithLocalRoutes(route));
+        assertThat(configuration.localRules()).anySatisfy(rule -> {
+            assertThat(rule.getTarget().budget()).contains(Duration.ofMillis(1000));
+            assertThat(rule.getTarget().ttl()).contains(ttlDuration);
+        });
+    }
+
     private Config configWithSingleLocalRoute(final Optional<Integer> ttl) {
         return configWithLocalRoutes(
             localRoute("/test/path/<arg>", "GET", "https://target.service/{arg}", ttl, PROXY));